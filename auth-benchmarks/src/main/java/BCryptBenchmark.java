@@ -0,0 +1,45 @@
+package com.example.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BCryptBenchmark {
+
+    @Param({"4", "8", "10", "12"})
+    public int strength;
+
+    private BCryptPasswordEncoder encoder;
+    private String storedHash;
+
+    @Setup
+    public void setUp() {
+        encoder = new BCryptPasswordEncoder(strength);
+        storedHash = encoder.encode("correct horse battery staple");
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean matches() {
+        return encoder.matches("correct horse battery staple", storedHash);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean matchesConcurrent() {
+        return encoder.matches("correct horse battery staple", storedHash);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String encode() {
+        return encoder.encode("correct horse battery staple");
+    }
+}
@@ -0,0 +1,41 @@
+package com.insecureloginimplementation.demo;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lives in the demo package because LoginServiceInsecure and its hashPassword are package-private.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Md5HashBenchmark {
+
+    @Param({"8", "64"})
+    public int passwordLength;
+
+    private LoginServiceInsecure loginService;
+    private String password;
+
+    @Setup
+    public void setUp() {
+        loginService = new LoginServiceInsecure(null, null, false);
+        password = "p".repeat(passwordLength);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String hashPassword() {
+        return loginService.hashPassword(password);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String hashPasswordConcurrent() {
+        return loginService.hashPassword(password);
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.benchmarks;
+
+import com.secureloginimplementation.demo.JCacheRateLimitBackend;
+import com.secureloginimplementation.demo.RateLimitingService;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.ConsumptionProbe;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cache.jcache.JCacheCacheManager;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives RateLimitingService against the module's own ehcache.xml. The limit is set high enough that
+ * every call takes the "allowed" path, which is what the interceptor sees for well-behaved clients.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RateLimitBenchmark {
+
+    @Param({"1", "1000", "100000"})
+    public int keyCount;
+
+    @Param({"false", "true"})
+    public boolean localBuckets;
+
+    private CacheManager jCacheManager;
+    private RateLimitingService rateLimitingService;
+    private String[] keys;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        String nextKey(String[] keys) {
+            String key = keys[next];
+            next = (next + 1) % keys.length;
+            return key;
+        }
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        jCacheManager = Caching.getCachingProvider("org.ehcache.jsr107.EhcacheCachingProvider")
+                .getCacheManager(getClass().getResource("/ehcache.xml").toURI(), getClass().getClassLoader());
+        rateLimitingService = new RateLimitingService(new JCacheRateLimitBackend(new JCacheCacheManager(jCacheManager)),
+                1_000_000_000L, 1_000_000_000L, 1, "SECONDS", false, localBuckets, 1_000_000L, 1000L, 1_000_000L, "none", 0L, 0L,
+                0L, 0L, 1, "MINUTES", 0L, 0L, 1, "SECONDS", new SimpleMeterRegistry());
+        keys = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = "10." + ((i >> 16) & 0xff) + "." + ((i >> 8) & 0xff) + "." + (i & 0xff);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        rateLimitingService.shutdown();
+        jCacheManager.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Bucket resolveBucket(Cursor cursor) {
+        return rateLimitingService.resolveBucket(cursor.nextKey(keys));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public ConsumptionProbe resolveAndConsume(Cursor cursor) {
+        return rateLimitingService.resolveBucket(cursor.nextKey(keys)).tryConsumeAndReturnRemaining(1);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public ConsumptionProbe resolveAndConsumeConcurrent(Cursor cursor) {
+        return rateLimitingService.resolveBucket(cursor.nextKey(keys)).tryConsumeAndReturnRemaining(1);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public ConsumptionProbe tryConsume(Cursor cursor) {
+        return rateLimitingService.tryConsume(cursor.nextKey(keys));
+    }
+}
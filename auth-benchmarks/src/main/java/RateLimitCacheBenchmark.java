@@ -0,0 +1,102 @@
+package com.example.benchmarks;
+
+import com.secureloginimplementation.demo.JCacheRateLimitBackend;
+import com.secureloginimplementation.demo.RateLimitingService;
+import io.github.bucket4j.ConsumptionProbe;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.ehcache.core.spi.service.StatisticsService;
+import org.ehcache.core.statistics.CacheStatistics;
+import org.ehcache.core.statistics.TierStatistics;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cache.jcache.JCacheCacheManager;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-access cost of rateLimitCache under each ehcache-*.xml profile, with as many tracked keys as
+ * the profile is sized for. Every key is created before measuring; "uniform" then picks keys at
+ * random, "hot" sends 90% of accesses to 10% of the keys. The refill is slow enough that no state
+ * expires during the run. At the end of each trial the cache hit ratio and, per tier, the hits,
+ * mappings and bytes per entry are printed. Entry processors run as a compute on the authoritative
+ * tier, which Ehcache does not count as a tier hit, so a profile with a heap tier shows it staying
+ * empty while the cache-level ratio is 100%.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-XX:MaxDirectMemorySize=3g"})
+public class RateLimitCacheBenchmark {
+
+    private static final Map<String, Integer> KEY_COUNTS = Map.of("100k", 100_000, "1m", 1_000_000, "10m", 10_000_000);
+
+    @Param({"100k", "1m", "10m"})
+    public String profile;
+
+    @Param({"uniform", "hot"})
+    public String access;
+
+    private CacheManager jCacheManager;
+    private CacheStatistics statistics;
+    private RateLimitingService rateLimitingService;
+    private String[] keys;
+    private int hotKeys;
+
+    @Setup
+    public void setUp() throws Exception {
+        jCacheManager = Caching.getCachingProvider("org.ehcache.jsr107.EhcacheCachingProvider")
+                .getCacheManager(getClass().getResource("/ehcache-" + profile + ".xml").toURI(), getClass().getClassLoader());
+        // One token an hour: states only ever drain, so their refill-time expiry stays hours away.
+        rateLimitingService = new RateLimitingService(new JCacheRateLimitBackend(new JCacheCacheManager(jCacheManager)),
+                1_000_000_000L, 1L, 1, "HOURS", false, false, 100_000L, 1000L, 100_000L, "none", 0L, 0L,
+                0L, 0L, 1, "MINUTES", 0L, 0L, 1, "SECONDS", new SimpleMeterRegistry());
+
+        int keyCount = KEY_COUNTS.get(profile);
+        keys = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = "10." + ((i >> 16) & 0xff) + "." + ((i >> 8) & 0xff) + "." + (i & 0xff);
+            rateLimitingService.tryConsume(keys[i]);
+        }
+        hotKeys = Math.max(1, keyCount / 10);
+
+        // Tier statistics are not exposed through JCache; Ehcache's (package-private) Eh107CacheManager
+        // keeps the service in a private field.
+        Field field = jCacheManager.getClass().getDeclaredField("statisticsService");
+        field.setAccessible(true);
+        statistics = ((StatisticsService) field.get(jCacheManager)).getCacheStatistics("rateLimitCache");
+        statistics.clear();
+    }
+
+    @TearDown
+    public void tearDown() {
+        StringBuilder report = new StringBuilder(String.format("%ncache    hit ratio %.2f%%  expirations %,d%n",
+                statistics.getCacheHitPercentage(), statistics.getCacheExpirations()));
+        for (Map.Entry<String, TierStatistics> tier : statistics.getTierStatistics().entrySet()) {
+            TierStatistics stats = tier.getValue();
+            long lookups = stats.getHits() + stats.getMisses();
+            report.append(String.format("%-8s hits %,d (%.2f%%)  mappings %,d  occupied %,d bytes (%d per entry)  evictions %,d%n",
+                    tier.getKey(), stats.getHits(), lookups == 0 ? 0.0 : 100.0 * stats.getHits() / lookups, stats.getMappings(),
+                    stats.getOccupiedByteSize(), stats.getMappings() == 0 ? 0 : stats.getOccupiedByteSize() / stats.getMappings(),
+                    stats.getEvictions()));
+        }
+        System.out.print(report);
+        rateLimitingService.shutdown();
+        jCacheManager.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public ConsumptionProbe tryConsume() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int index = "hot".equals(access) && random.nextInt(10) != 0
+                ? random.nextInt(hotKeys)
+                : random.nextInt(keys.length);
+        return rateLimitingService.tryConsume(keys[index]);
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.benchmarks;
+
+import com.secureloginimplementation.demo.HazelcastRateLimitBackend;
+import com.secureloginimplementation.demo.RateLimitingService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Starts a Hazelcast cluster of embedded RateLimitingService nodes on 127.0.0.1 and checks that they
+ * enforce one limit between them. For each backend optimization, clients spread requests for the same
+ * key round-robin over all nodes; the number allowed must not exceed the bucket capacity (plus the
+ * unsynchronized allowance per node for "delaying"), where independent per-node buckets would allow
+ * capacity times the node count. Latency percentiles of tryConsume are printed per optimization.
+ * Finally one node is shut down and the survivors must still see the drained bucket from its backup.
+ * <p>
+ * Usage: java -cp benchmarks.jar com.example.benchmarks.RateLimitClusterHarness [nodes] [requests]
+ */
+public class RateLimitClusterHarness {
+
+    private static final long CAPACITY = 100;
+    private static final long MAX_UNSYNCHRONIZED_TOKENS = 10;
+    private static final int CLIENTS = 16;
+    private static final int BASE_PORT = 5801;
+
+    public static void main(String[] args) throws Exception {
+        int nodeCount = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        String clusterName = "rate-limit-harness-" + UUID.randomUUID();
+        List<String> addresses = new ArrayList<>();
+        for (int i = 0; i < nodeCount; i++) {
+            addresses.add("127.0.0.1:" + (BASE_PORT + i));
+        }
+        String members = String.join(",", addresses);
+
+        List<HazelcastRateLimitBackend> backends = new ArrayList<>();
+        boolean passed = true;
+        try {
+            for (int i = 0; i < nodeCount; i++) {
+                backends.add(new HazelcastRateLimitBackend(clusterName, BASE_PORT + i, members, "127.0.0.1",
+                        Duration.ofMinutes(10)));
+            }
+            int clusterSize = backends.get(0).hazelcast().getCluster().getMembers().size();
+            System.out.println("Cluster formed with " + clusterSize + " of " + nodeCount + " members");
+            passed = clusterSize == nodeCount;
+
+            List<String> optimizations = List.of("none", "batching", "delaying");
+            for (String optimization : optimizations) {
+                List<RateLimitingService> nodes = new ArrayList<>();
+                for (HazelcastRateLimitBackend backend : backends) {
+                    nodes.add(service(backend, optimization));
+                }
+                String key = "198.51.100." + optimizations.indexOf(optimization);
+                long allowedLimit = CAPACITY + ("delaying".equals(optimization) ? MAX_UNSYNCHRONIZED_TOKENS * nodeCount : 0);
+                long[] latencies = new long[requests];
+                int allowed = run(nodes, key, latencies);
+                Arrays.sort(latencies);
+                boolean ok = allowed <= allowedLimit && allowed >= CAPACITY;
+                passed &= ok;
+                System.out.printf("%-9s allowed %d of %d (limit %d, independent nodes would allow %d)  "
+                                + "p50 %.0f us  p99 %.0f us  max %.0f us  %s%n",
+                        optimization, allowed, requests, allowedLimit, CAPACITY * nodeCount,
+                        latencies[requests / 2] / 1e3, latencies[(int) (requests * 0.99)] / 1e3,
+                        latencies[requests - 1] / 1e3, ok ? "OK" : "FAILED");
+                nodes.forEach(RateLimitingService::shutdown);
+            }
+
+            if (nodeCount > 1) {
+                List<RateLimitingService> nodes = new ArrayList<>();
+                for (HazelcastRateLimitBackend backend : backends) {
+                    nodes.add(service(backend, "none"));
+                }
+                String key = "198.51.100.200";
+                for (int i = 0; i < CAPACITY; i++) {
+                    nodes.get(i % nodeCount).tryConsume(key);
+                }
+                backends.remove(0).close();
+                boolean stillDrained = !nodes.get(1).tryConsume(key).isConsumed();
+                passed &= stillDrained;
+                System.out.println("After shutting down one member the bucket is "
+                        + (stillDrained ? "still drained: OK" : "full again: FAILED"));
+            }
+        } finally {
+            backends.forEach(HazelcastRateLimitBackend::close);
+        }
+        System.out.println(passed ? "PASSED" : "FAILED");
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static RateLimitingService service(HazelcastRateLimitBackend backend, String optimization) {
+        // Refill one token per hour, so nothing refills while the harness runs.
+        return new RateLimitingService(backend, CAPACITY, 1, 1, "HOURS", false, false, 1000L, 1000L, 10_000L,
+                optimization, MAX_UNSYNCHRONIZED_TOKENS, 60_000L,
+                0L, 0L, 1, "MINUTES", 0L, 0L, 1, "SECONDS", new SimpleMeterRegistry());
+    }
+
+    private static int run(List<RateLimitingService> nodes, String key, long[] latencies) throws Exception {
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger allowed = new AtomicInteger();
+        try (ExecutorService clients = Executors.newFixedThreadPool(CLIENTS)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int c = 0; c < CLIENTS; c++) {
+                futures.add(clients.submit(() -> {
+                    for (int i = next.getAndIncrement(); i < latencies.length; i = next.getAndIncrement()) {
+                        long start = System.nanoTime();
+                        boolean consumed = nodes.get(i % nodes.size()).tryConsume(key).isConsumed();
+                        latencies[i] = System.nanoTime() - start;
+                        if (consumed) {
+                            allowed.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        return allowed.get();
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.loadtest;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The client addresses a run pretends to come from and how often each one is picked. Header mode
+ * spoofs them in a forwarding header: IPv4 from 198.18.0.0/15 and IPv6 from 2001:db8::/32, both
+ * reserved for documentation and benchmarking, each v6 address in its own /64. Bind mode makes them
+ * real by binding the client sockets to 127.0.0.2 and up, which Linux routes to loopback without any
+ * setup, so apps that key on the socket address see distinct clients too.
+ * <p>
+ * "zipf" gives address i a weight of 1/(i+1), so the first few send most of the traffic, like a
+ * handful of aggressive clients among many quiet ones.
+ */
+final class ClientAddresses {
+
+    static final int MAX_V4_ADDRESSES = 1 << 17;
+    static final int MAX_BOUND_ADDRESSES = 256;
+
+    private final String[] headerValues;
+    private final InetAddress[] boundAddresses;
+    private final double[] cumulativeWeights;
+
+    ClientAddresses(LoadOptions options) throws UnknownHostException {
+        int count = options.ipDistribution.equals("single") ? 1 : options.ips;
+        this.headerValues = new String[count];
+        this.boundAddresses = options.ipMode.equals("bind") ? new InetAddress[count] : null;
+        for (int i = 0; i < count; i++) {
+            headerValues[i] = options.ipFamily.equals("v6")
+                    ? "2001:db8:" + Integer.toHexString(i >>> 16) + ":" + Integer.toHexString(i & 0xffff) + "::1"
+                    : "198." + (18 + (i >>> 16)) + "." + ((i >>> 8) & 0xff) + "." + (i & 0xff);
+            if (boundAddresses != null) {
+                int host = i + 2;
+                boundAddresses[i] = InetAddress.getByAddress(new byte[]{127, 0, (byte) (host >>> 8), (byte) host});
+            }
+        }
+        if (options.ipDistribution.equals("zipf")) {
+            cumulativeWeights = new double[count];
+            double sum = 0;
+            for (int i = 0; i < count; i++) {
+                sum += 1.0 / (i + 1);
+                cumulativeWeights[i] = sum;
+            }
+        } else {
+            cumulativeWeights = null;
+        }
+    }
+
+    int size() {
+        return headerValues.length;
+    }
+
+    int next() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (cumulativeWeights == null) {
+            return random.nextInt(headerValues.length);
+        }
+        double point = random.nextDouble(cumulativeWeights[cumulativeWeights.length - 1]);
+        int index = Arrays.binarySearch(cumulativeWeights, point);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    String headerValue(int index) {
+        return headerValues[index];
+    }
+
+    InetAddress boundAddress(int index) {
+        return boundAddresses[index];
+    }
+}
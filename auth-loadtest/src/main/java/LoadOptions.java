@@ -0,0 +1,146 @@
+package com.example.loadtest;
+
+import java.net.URI;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Command line of loadtest.jar, given as --name=value pairs; every option has a default, so a bare
+ * run drives http://localhost:8080 for 30 seconds. Unknown options are rejected rather than ignored,
+ * so a typo cannot silently produce a run with the wrong settings.
+ */
+final class LoadOptions {
+
+    static final String USAGE = """
+            Usage: java -jar loadtest.jar [--name=value ...]
+              --url=http://localhost:8080    app under test (any of the demo apps)
+              --concurrency=64               virtual-thread workers
+              --rate=0                       total requests/s to schedule; 0 = closed loop, as fast as answered
+              --duration=30                  measured seconds
+              --warmup=5                     seconds run before measuring, results discarded
+              --users=50                     accounts registered before the run for valid/invalid logins
+              --mix=valid:70,invalid:20,unknown:10,register:0
+                                             relative weights of the four operations
+              --ips=1000                     distinct client addresses
+              --ip-distribution=uniform      uniform | zipf (a few addresses send most requests) | single
+              --ip-mode=header               header: spoof via --ip-header, bind: bind to 127.x.y.z (max 256),
+                                             none: every request from the loopback address
+              --ip-header=X-Forwarded-For    header carrying the spoofed address
+              --ip-family=v4                 v4 (198.18.0.0/15) | v6 (2001:db8::/32), header mode only
+              --timeout-ms=10000             per-request timeout
+              --report-interval=5            seconds between progress lines, 0 = off
+              --hgrm=                        write <prefix>-<operation>.hgrm percentile files
+              --max-p99-ms=0                 fail (exit 1) if the overall p99 exceeds this; 0 = no check
+              --max-429-rate=-1              fail if the share of 429 responses exceeds this (0..1)
+              --max-error-rate=-1            fail if the share of transport errors and 5xx exceeds this
+            """;
+
+    URI url = URI.create("http://localhost:8080");
+    int concurrency = 64;
+    double rate;
+    int durationSeconds = 30;
+    int warmupSeconds = 5;
+    int users = 50;
+    final Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+    int ips = 1000;
+    String ipDistribution = "uniform";
+    String ipMode = "header";
+    String ipHeader = "X-Forwarded-For";
+    String ipFamily = "v4";
+    long timeoutMs = 10_000;
+    int reportIntervalSeconds = 5;
+    String hgrmPrefix = "";
+    double maxP99Ms;
+    double max429Rate = -1;
+    double maxErrorRate = -1;
+
+    LoadOptions() {
+        mix.put(Operation.VALID_LOGIN, 70);
+        mix.put(Operation.INVALID_LOGIN, 20);
+        mix.put(Operation.UNKNOWN_LOGIN, 10);
+        mix.put(Operation.REGISTER, 0);
+    }
+
+    static LoadOptions parse(String[] args) {
+        LoadOptions options = new LoadOptions();
+        Map<String, String> values = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (arg.equals("--help") || arg.equals("-h")) {
+                throw new IllegalArgumentException("");
+            }
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+            }
+            values.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        values.forEach(options::set);
+        options.validate();
+        return options;
+    }
+
+    private void set(String name, String value) {
+        switch (name) {
+            case "url" -> url = URI.create(value.endsWith("/") ? value.substring(0, value.length() - 1) : value);
+            case "concurrency" -> concurrency = Integer.parseInt(value);
+            case "rate" -> rate = Double.parseDouble(value);
+            case "duration" -> durationSeconds = Integer.parseInt(value);
+            case "warmup" -> warmupSeconds = Integer.parseInt(value);
+            case "users" -> users = Integer.parseInt(value);
+            case "mix" -> parseMix(value);
+            case "ips" -> ips = Integer.parseInt(value);
+            case "ip-distribution" -> ipDistribution = value;
+            case "ip-mode" -> ipMode = value;
+            case "ip-header" -> ipHeader = value;
+            case "ip-family" -> ipFamily = value;
+            case "timeout-ms" -> timeoutMs = Long.parseLong(value);
+            case "report-interval" -> reportIntervalSeconds = Integer.parseInt(value);
+            case "hgrm" -> hgrmPrefix = value;
+            case "max-p99-ms" -> maxP99Ms = Double.parseDouble(value);
+            case "max-429-rate" -> max429Rate = Double.parseDouble(value);
+            case "max-error-rate" -> maxErrorRate = Double.parseDouble(value);
+            default -> throw new IllegalArgumentException("Unknown option --" + name);
+        }
+    }
+
+    private void parseMix(String value) {
+        mix.replaceAll((operation, weight) -> 0);
+        for (String part : value.split(",")) {
+            String[] nameAndWeight = part.split(":");
+            if (nameAndWeight.length != 2) {
+                throw new IllegalArgumentException("Expected operation:weight in --mix, got: " + part);
+            }
+            mix.put(Operation.fromName(nameAndWeight[0].trim()), Integer.parseInt(nameAndWeight[1].trim()));
+        }
+    }
+
+    private void validate() {
+        if (concurrency < 1 || durationSeconds < 1 || warmupSeconds < 0 || ips < 1 || timeoutMs < 1) {
+            throw new IllegalArgumentException("concurrency, duration, ips and timeout-ms must be positive, warmup not negative");
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() <= 0 || mix.values().stream().anyMatch(w -> w < 0)) {
+            throw new IllegalArgumentException("--mix needs non-negative weights with a positive sum");
+        }
+        boolean needsUsers = mix.get(Operation.VALID_LOGIN) > 0 || mix.get(Operation.INVALID_LOGIN) > 0;
+        if (needsUsers && users < 1) {
+            throw new IllegalArgumentException("valid and invalid logins need --users of at least 1");
+        }
+        if (!ipDistribution.matches("uniform|zipf|single")) {
+            throw new IllegalArgumentException("--ip-distribution must be uniform, zipf or single");
+        }
+        if (!ipMode.matches("header|bind|none")) {
+            throw new IllegalArgumentException("--ip-mode must be header, bind or none");
+        }
+        if (!ipFamily.matches("v4|v6")) {
+            throw new IllegalArgumentException("--ip-family must be v4 or v6");
+        }
+        if (ipMode.equals("bind") && ips > ClientAddresses.MAX_BOUND_ADDRESSES) {
+            throw new IllegalArgumentException("--ip-mode=bind supports at most " + ClientAddresses.MAX_BOUND_ADDRESSES
+                    + " addresses, each needs its own HttpClient");
+        }
+        if (ipFamily.equals("v4") && ips > ClientAddresses.MAX_V4_ADDRESSES) {
+            throw new IllegalArgumentException("--ips is limited to " + ClientAddresses.MAX_V4_ADDRESSES + " for v4");
+        }
+    }
+}
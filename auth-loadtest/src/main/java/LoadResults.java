@@ -0,0 +1,158 @@
+package com.example.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms (microseconds, HdrHistogram with three significant digits) and response status
+ * counts per operation. A status of 0 stands for a request that got no HTTP response at all: timeout,
+ * refused or reset connection. Only requests scheduled after the warm-up are counted; all requests
+ * feed the interval numbers printed while the run is in progress.
+ */
+final class LoadResults {
+
+    static final int TRANSPORT_ERROR = 0;
+
+    private final Map<Operation, Recorder> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, Map<Integer, LongAdder>> statuses = new EnumMap<>(Operation.class);
+    private final Map<String, LongAdder> transportErrors = new ConcurrentHashMap<>();
+    private final Recorder intervalLatencies = new Recorder(3);
+    private final LongAdder intervalRequests = new LongAdder();
+    private final LongAdder intervalRejected = new LongAdder();
+    private final LongAdder intervalErrors = new LongAdder();
+
+    LoadResults() {
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new Recorder(3));
+            statuses.put(operation, new ConcurrentHashMap<>());
+        }
+    }
+
+    void record(Operation operation, long latencyNanos, int status, boolean measured) {
+        long micros = Math.max(1, latencyNanos / 1000);
+        intervalLatencies.recordValue(micros);
+        intervalRequests.increment();
+        if (status == 429) {
+            intervalRejected.increment();
+        } else if (isError(status)) {
+            intervalErrors.increment();
+        }
+        if (measured) {
+            latencies.get(operation).recordValue(micros);
+            statuses.get(operation).computeIfAbsent(status, s -> new LongAdder()).increment();
+        }
+    }
+
+    void recordTransportError(Throwable error, boolean measured) {
+        if (measured) {
+            transportErrors.computeIfAbsent(error.getClass().getSimpleName(), name -> new LongAdder()).increment();
+        }
+    }
+
+    void printInterval(PrintStream out, long elapsedSeconds, int intervalSeconds) {
+        Histogram interval = intervalLatencies.getIntervalHistogram();
+        long requests = intervalRequests.sumThenReset();
+        long rejected = intervalRejected.sumThenReset();
+        long errors = intervalErrors.sumThenReset();
+        out.printf("  [%4ds] %8.1f req/s  p50 %8.2f ms  p99 %8.2f ms  429 %5.1f%%  errors %d%n",
+                elapsedSeconds, (double) requests / intervalSeconds,
+                interval.getValueAtPercentile(50) / 1000.0, interval.getValueAtPercentile(99) / 1000.0,
+                requests == 0 ? 0.0 : 100.0 * rejected / requests, errors);
+    }
+
+    /**
+     * Prints the final table and returns whether the run stayed within the configured thresholds.
+     */
+    boolean report(PrintStream out, LoadOptions options, double measuredSeconds) throws FileNotFoundException {
+        out.printf("%n%-9s %9s %9s %9s %9s %9s %9s %7s %6s %6s %6s %6s %6s %6s%n", "operation", "requests", "req/s",
+                "p50 ms", "p99 ms", "p999 ms", "max ms", "2xx", "401", "409", "429", "503", "other", "error");
+        Histogram all = new Histogram(3);
+        Map<Integer, Long> allStatuses = new ConcurrentHashMap<>();
+        long loginRequests = 0;
+        long loginRejected = 0;
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = latencies.get(operation).getIntervalHistogram();
+            Map<Integer, Long> counts = new ConcurrentHashMap<>();
+            statuses.get(operation).forEach((status, count) -> counts.put(status, count.sum()));
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            all.add(histogram);
+            counts.forEach((status, count) -> allStatuses.merge(status, count, Long::sum));
+            if (operation != Operation.REGISTER) {
+                loginRequests += histogram.getTotalCount();
+                loginRejected += counts.getOrDefault(429, 0L);
+            }
+            printRow(out, operation.label, histogram, counts, measuredSeconds);
+            if (!options.hgrmPrefix.isEmpty()) {
+                try (PrintStream file = new PrintStream(options.hgrmPrefix + "-" + operation.label + ".hgrm")) {
+                    histogram.outputPercentileDistribution(file, 1000.0);
+                }
+            }
+        }
+        long total = all.getTotalCount();
+        if (total == 0) {
+            out.println("No requests completed in the measured window.");
+            return false;
+        }
+        printRow(out, "all", all, allStatuses, measuredSeconds);
+
+        long rejected = allStatuses.getOrDefault(429, 0L);
+        long errors = allStatuses.entrySet().stream().filter(e -> isError(e.getKey())).mapToLong(Map.Entry::getValue).sum();
+        double rejectedRate = (double) rejected / total;
+        double errorRate = (double) errors / total;
+        double p99Ms = all.getValueAtPercentile(99) / 1000.0;
+        out.printf("%n429 rate: %.2f%% of all requests, %.2f%% of logins%n", 100 * rejectedRate,
+                loginRequests == 0 ? 0.0 : 100.0 * loginRejected / loginRequests);
+        out.printf("Error rate (5xx and transport errors): %.2f%%%n", 100 * errorRate);
+        transportErrors.forEach((type, count) -> out.println("  " + type + ": " + count.sum()));
+        if (options.rate > 0 && total / measuredSeconds < 0.95 * options.rate) {
+            out.printf("Target rate %.0f req/s not reached (%.1f req/s); latencies include the time requests waited "
+                    + "for their scheduled slot, raise --concurrency if the server is not the bottleneck.%n",
+                    options.rate, total / measuredSeconds);
+        }
+
+        boolean passed = true;
+        if (options.maxP99Ms > 0 && p99Ms > options.maxP99Ms) {
+            out.printf("FAILED: p99 %.2f ms exceeds --max-p99-ms=%s%n", p99Ms, options.maxP99Ms);
+            passed = false;
+        }
+        if (options.max429Rate >= 0 && rejectedRate > options.max429Rate) {
+            out.printf("FAILED: 429 rate %.4f exceeds --max-429-rate=%s%n", rejectedRate, options.max429Rate);
+            passed = false;
+        }
+        if (options.maxErrorRate >= 0 && errorRate > options.maxErrorRate) {
+            out.printf("FAILED: error rate %.4f exceeds --max-error-rate=%s%n", errorRate, options.maxErrorRate);
+            passed = false;
+        }
+        return passed;
+    }
+
+    private static void printRow(PrintStream out, String label, Histogram histogram, Map<Integer, Long> counts,
+                                 double measuredSeconds) {
+        long success = counts.entrySet().stream().filter(e -> e.getKey() >= 200 && e.getKey() < 300)
+                .mapToLong(Map.Entry::getValue).sum();
+        long unauthorized = counts.getOrDefault(401, 0L);
+        long conflict = counts.getOrDefault(409, 0L);
+        long rejected = counts.getOrDefault(429, 0L);
+        long busy = counts.getOrDefault(503, 0L);
+        long failed = counts.getOrDefault(TRANSPORT_ERROR, 0L);
+        long other = histogram.getTotalCount() - success - unauthorized - conflict - rejected - busy - failed;
+        out.printf("%-9s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %7d %6d %6d %6d %6d %6d %6d%n", label,
+                histogram.getTotalCount(), histogram.getTotalCount() / measuredSeconds,
+                histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0, histogram.getMaxValue() / 1000.0,
+                success, unauthorized, conflict, rejected, busy, other, failed);
+    }
+
+    private static boolean isError(int status) {
+        return status == TRANSPORT_ERROR || status >= 500;
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End-to-end load generator for the /register and /login endpoints of the demo apps. Each worker is
+ * a virtual thread sending one request at a time through java.net.http.HttpClient, picking the
+ * operation from the configured mix and the client address from ClientAddresses. It works against
+ * insecure-login-web-demo, secure-password-web-demo, secure-ratelimit-web-demo and the WebFlux
+ * variant alike; only the rate-limited ones answer 429.
+ * <p>
+ * Without --rate the run is a closed loop: each worker sends its next request as soon as the previous
+ * one is answered, which measures peak throughput. With --rate the requests are scheduled at fixed
+ * times and latency is taken from the scheduled time, not from when the request was actually sent,
+ * so a stalled server shows up as latency instead of being hidden by the clients slowing down.
+ * <p>
+ * The exit status is 0 on success, 1 if a --max-* threshold was exceeded and 2 on bad options or a
+ * failed setup, so a deploy pipeline can gate on it.
+ */
+public class LoadTest {
+
+    private final LoadOptions options;
+    private final ClientAddresses addresses;
+    private final LoadResults results = new LoadResults();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpClient sharedClient;
+    private final HttpClient[] boundClients;
+    private final String runId = UUID.randomUUID().toString().substring(0, 8);
+    private final Operation[] mixTable;
+    private final AtomicLong registrations = new AtomicLong();
+
+    LoadTest(LoadOptions options) throws Exception {
+        this.options = options;
+        this.addresses = new ClientAddresses(options);
+        if (options.ipMode.equals("bind")) {
+            this.sharedClient = null;
+            this.boundClients = new HttpClient[addresses.size()];
+            for (int i = 0; i < boundClients.length; i++) {
+                boundClients[i] = newClient().localAddress(addresses.boundAddress(i)).build();
+            }
+        } else {
+            this.sharedClient = newClient().build();
+            this.boundClients = null;
+        }
+        List<Operation> table = new ArrayList<>();
+        for (Map.Entry<Operation, Integer> entry : options.mix.entrySet()) {
+            for (int i = 0; i < entry.getValue(); i++) {
+                table.add(entry.getKey());
+            }
+        }
+        this.mixTable = table.toArray(new Operation[0]);
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options;
+        try {
+            options = LoadOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            if (!e.getMessage().isEmpty()) {
+                System.err.println(e.getMessage());
+            }
+            System.err.print(LoadOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+        LoadTest loadTest = new LoadTest(options);
+        if (!loadTest.registerUsers()) {
+            System.exit(2);
+        }
+        boolean passed = loadTest.run();
+        System.exit(passed ? 0 : 1);
+    }
+
+    private HttpClient.Builder newClient() {
+        // Plain HTTP/1.1: the apps do not speak h2c, and an upgrade attempt on every connection skews latency.
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(options.timeoutMs))
+                .executor(executor);
+    }
+
+    /**
+     * Registers the accounts used by valid and invalid logins. A 409 is fine (the same names are never
+     * reused across runs, but an app may be restarted with a persistent store); anything else aborts.
+     */
+    private boolean registerUsers() throws Exception {
+        boolean needsUsers = options.mix.get(Operation.VALID_LOGIN) > 0 || options.mix.get(Operation.INVALID_LOGIN) > 0;
+        if (!needsUsers) {
+            return true;
+        }
+        System.out.println("Registering " + options.users + " users on " + options.url + " ...");
+        List<Future<Integer>> responses = new ArrayList<>();
+        for (int i = 0; i < options.users; i++) {
+            int user = i;
+            responses.add(executor.submit(() -> {
+                for (int attempt = 0; ; attempt++) {
+                    int status = send(Operation.REGISTER, username(user), password(user), addresses.next()).statusCode();
+                    // A hashing pool that is briefly full answers 503; give it a moment rather than failing the setup.
+                    if (status != 503 || attempt == 10) {
+                        return status;
+                    }
+                    Thread.sleep(200);
+                }
+            }));
+        }
+        for (int i = 0; i < responses.size(); i++) {
+            int status;
+            try {
+                status = responses.get(i).get();
+            } catch (Exception e) {
+                System.err.println("Registering " + username(i) + " failed: " + e.getCause());
+                return false;
+            }
+            if (status != 201 && status != 409) {
+                System.err.println("Registering " + username(i) + " returned HTTP " + status);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean run() throws Exception {
+        System.out.printf("Load test %s: %d workers, %s, %d s warm-up + %d s, mix %s, %d %s client address(es) via %s%n",
+                options.url, options.concurrency, options.rate > 0 ? options.rate + " req/s scheduled" : "closed loop",
+                options.warmupSeconds, options.durationSeconds, options.mix, addresses.size(), options.ipDistribution,
+                options.ipMode);
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(options.warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(options.durationSeconds);
+
+        List<Future<?>> workers = new ArrayList<>();
+        for (int w = 0; w < options.concurrency; w++) {
+            int worker = w;
+            workers.add(executor.submit(() -> work(worker, start, measureFrom, end)));
+        }
+        if (options.reportIntervalSeconds > 0) {
+            long intervalNanos = TimeUnit.SECONDS.toNanos(options.reportIntervalSeconds);
+            for (long tick = start + intervalNanos; tick <= end; tick += intervalNanos) {
+                LockSupport.parkNanos(tick - System.nanoTime());
+                results.printInterval(System.out, TimeUnit.NANOSECONDS.toSeconds(tick - start), options.reportIntervalSeconds);
+            }
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        return results.report(System.out, options, options.durationSeconds);
+    }
+
+    private void work(int worker, long start, long measureFrom, long end) {
+        double periodNanos = options.rate > 0 ? 1e9 / options.rate : 0;
+        for (long sequence = worker; ; sequence += options.concurrency) {
+            long scheduled;
+            if (periodNanos > 0) {
+                scheduled = start + (long) (sequence * periodNanos);
+                if (scheduled >= end) {
+                    return;
+                }
+                long wait = scheduled - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            } else {
+                scheduled = System.nanoTime();
+                if (scheduled >= end) {
+                    return;
+                }
+            }
+            Operation operation = mixTable[ThreadLocalRandom.current().nextInt(mixTable.length)];
+            boolean measured = scheduled >= measureFrom;
+            try {
+                int status = sendOne(operation).statusCode();
+                results.record(operation, System.nanoTime() - scheduled, status, measured);
+            } catch (Exception e) {
+                results.record(operation, System.nanoTime() - scheduled, LoadResults.TRANSPORT_ERROR, measured);
+                results.recordTransportError(e, measured);
+            }
+        }
+    }
+
+    private HttpResponse<Void> sendOne(Operation operation) throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int address = addresses.next();
+        return switch (operation) {
+            case VALID_LOGIN -> {
+                int user = random.nextInt(options.users);
+                yield send(operation, username(user), password(user), address);
+            }
+            case INVALID_LOGIN -> send(operation, username(random.nextInt(options.users)), "wrong-" + random.nextInt(), address);
+            case UNKNOWN_LOGIN -> send(operation, "lt-" + runId + "-unknown-" + random.nextInt(1 << 30), "pw", address);
+            case REGISTER -> send(operation, "lt-" + runId + "-new-" + registrations.incrementAndGet(), "pw-" + random.nextInt(), address);
+        };
+    }
+
+    private HttpResponse<Void> send(Operation operation, String username, String password, int address) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(options.url + operation.path))
+                .timeout(Duration.ofMillis(options.timeoutMs))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}"));
+        HttpClient client = sharedClient;
+        if (boundClients != null) {
+            client = boundClients[address];
+        } else if (options.ipMode.equals("header")) {
+            request.header(options.ipHeader, addresses.headerValue(address));
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.discarding());
+    }
+
+    private String username(int user) {
+        return "lt-" + runId + "-" + user;
+    }
+
+    private String password(int user) {
+        return "pw-" + user + "-" + runId;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.loadtest;
+
+/**
+ * The request kinds in a load mix. Valid and invalid logins use accounts registered before the run,
+ * unknown logins a username that was never registered, and register a fresh username every time.
+ */
+enum Operation {
+
+    VALID_LOGIN("valid", "/login"),
+    INVALID_LOGIN("invalid", "/login"),
+    UNKNOWN_LOGIN("unknown", "/login"),
+    REGISTER("register", "/register");
+
+    final String label;
+    final String path;
+
+    Operation(String label, String path) {
+        this.label = label;
+        this.path = path;
+    }
+
+    static Operation fromName(String name) {
+        for (Operation operation : values()) {
+            if (operation.label.equals(name)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation in --mix: " + name + " (valid, invalid, unknown, register)");
+    }
+}
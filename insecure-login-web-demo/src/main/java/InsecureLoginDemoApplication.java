@@ -1,15 +1,20 @@
 package com.insecureloginimplementation.demo;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.LazyInitializationExcludeFilter;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.context.annotation.Bean;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.web.bind.annotation.*;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap; 
 
@@ -23,6 +28,26 @@ public class InsecureLoginDemoApplication {
         System.out.println("Login:    POST /login {\"username\":\"user\",\"password\":\"pass\"}");
     }
 
+    /**
+     * Only has an effect with spring.main.lazy-initialization=true, as in the startup build profile:
+     * the login path is still created at startup, everything else on first use.
+     */
+    @Bean
+    public static LazyInitializationExcludeFilter loginPathBeans() {
+        return LazyInitializationExcludeFilter.forBeanTypes(AuthController.class, LoginServiceInsecure.class);
+    }
+
+    @Bean
+    public PasswordEncoder passwordEncoder() {
+        LegacyMd5PasswordEncoder legacyEncoder = new LegacyMd5PasswordEncoder();
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put("bcrypt", new BCryptPasswordEncoder());
+        encoders.put("MD5", legacyEncoder);
+        DelegatingPasswordEncoder passwordEncoder = new DelegatingPasswordEncoder("bcrypt", encoders);
+        // Hashes stored before the migration have no {id} prefix and are plain hex MD5.
+        passwordEncoder.setDefaultPasswordEncoderForMatches(legacyEncoder);
+        return passwordEncoder;
+    }
 }
 class UserCredentials {
     private String username;
@@ -82,32 +107,50 @@ class AuthController {
     }
 }
 
+/**
+ * Only exists while the migration runs. The startup profile's AOT processing evaluates the condition at
+ * build time, so build that profile with app.password-migration.enabled set as it will run.
+ */
+@RestController
+@ConditionalOnProperty(name = "app.password-migration.enabled", havingValue = "true")
+class MigrationController {
+
+    private final PasswordMigration passwordMigration;
+
+    public MigrationController(PasswordMigration passwordMigration) {
+        this.passwordMigration = passwordMigration;
+    }
+
+    @GetMapping("/admin/migration")
+    public ResponseEntity<Map<String, Object>> migrationProgress() {
+        return ResponseEntity.ok(passwordMigration.progress());
+    }
+}
+
 
 @Service
 class LoginServiceInsecure {
 
+    private static final LegacyMd5PasswordEncoder LEGACY_ENCODER = new LegacyMd5PasswordEncoder();
+
     private final Map<String, String> userCredentials = new ConcurrentHashMap<>();
+    private final PasswordEncoder passwordEncoder;
+    private final PasswordMigration passwordMigration;
+    private final boolean migrationEnabled;
+
+    public LoginServiceInsecure(PasswordEncoder passwordEncoder, PasswordMigration passwordMigration,
+                                @Value("${app.password-migration.enabled:false}") boolean migrationEnabled) {
+        this.passwordEncoder = passwordEncoder;
+        this.passwordMigration = passwordMigration;
+        this.migrationEnabled = migrationEnabled;
+    }
 
-    private String hashPassword(String password) {
+    String hashPassword(String password) {
         if (password == null) {
              System.err.println("Attempted to hash a null password.");
              throw new IllegalArgumentException("Password cannot be null.");
         }
-        try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] hashBytes = md.digest(password.getBytes(StandardCharsets.UTF_8));
-
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hashBytes) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
-            }
-            return hexString.toString();
-        } catch (NoSuchAlgorithmException e) {
-            System.err.println("Error: MD5 Algorithm not found!");
-            throw new RuntimeException("MD5 algorithm not found", e);
-        }
+        return LEGACY_ENCODER.encode(password);
     }
 
     public boolean registerUser(String username, String password) {
@@ -117,7 +160,7 @@ class LoginServiceInsecure {
             return false; 
         }
 
-         String hashedPassword = hashPassword(password); 
+         String hashedPassword = migrationEnabled ? passwordEncoder.encode(password) : hashPassword(password);
 
          String previousValue = userCredentials.putIfAbsent(trimmedUsername, hashedPassword);
 
@@ -143,6 +186,16 @@ class LoginServiceInsecure {
             return false; 
         }
 
+        if (migrationEnabled) {
+            boolean match = passwordEncoder.matches(password, storedHash);
+            if (match && passwordEncoder.upgradeEncoding(storedHash)) {
+                System.out.println("Service: Legacy hash verified for user '" + trimmedUsername + "', queueing BCrypt upgrade.");
+                passwordMigration.upgradeLater(userCredentials, trimmedUsername, storedHash, password);
+            }
+            System.out.println("Service: Password " + (match ? "matches" : "does NOT match") + " for user '" + trimmedUsername + "'.");
+            return match;
+        }
+
         String enteredPasswordHash;
         try {
             enteredPasswordHash = hashPassword(password);
@@ -164,6 +217,7 @@ class LoginServiceInsecure {
         }
         return match;
     }
+
      public void printStoredHashes() {
         System.out.println("\n--- Current Stored Hashes ---");
         if (userCredentials.isEmpty()) {
@@ -0,0 +1,45 @@
+package com.insecureloginimplementation.demo;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Verifies the unsalted hex-MD5 hashes written by earlier versions of LoginServiceInsecure.
+ * Only meant to sit behind a DelegatingPasswordEncoder so legacy users can still log in until
+ * their hash is upgraded.
+ */
+class LegacyMd5PasswordEncoder implements PasswordEncoder {
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            byte[] hashBytes = md.digest(rawPassword.toString().getBytes(StandardCharsets.UTF_8));
+
+            StringBuilder hexString = new StringBuilder();
+            for (byte b : hashBytes) {
+                String hex = Integer.toHexString(0xff & b);
+                if (hex.length() == 1) hexString.append('0');
+                hexString.append(hex);
+            }
+            return hexString.toString();
+        } catch (NoSuchAlgorithmException e) {
+            System.err.println("Error: MD5 Algorithm not found!");
+            throw new RuntimeException("MD5 algorithm not found", e);
+        }
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return MessageDigest.isEqual(encode(rawPassword).getBytes(StandardCharsets.US_ASCII),
+                encodedPassword.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return true;
+    }
+}
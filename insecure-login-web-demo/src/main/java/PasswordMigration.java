@@ -0,0 +1,86 @@
+package com.insecureloginimplementation.demo;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Re-hashes legacy MD5 credentials with BCrypt after a successful login, on a background worker so
+ * the login response never waits for BCrypt. The raw password only lives in the work queue until the
+ * worker picks it up. If the queue is full the upgrade is dropped and simply retried on the user's
+ * next legacy login.
+ */
+@Component
+class PasswordMigration {
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor worker;
+
+    private final AtomicLong legacyLogins = new AtomicLong();
+    private final AtomicLong upgradesQueued = new AtomicLong();
+    private final AtomicLong upgradesCompleted = new AtomicLong();
+    private final AtomicLong upgradesSkipped = new AtomicLong();
+    private final AtomicLong upgradesDropped = new AtomicLong();
+    private final AtomicLong upgradesFailed = new AtomicLong();
+
+    PasswordMigration(PasswordEncoder passwordEncoder,
+                      @Value("${app.password-migration.queue-capacity:1000}") int queueCapacity) {
+        this.passwordEncoder = passwordEncoder;
+        this.worker = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("password-migration").daemon(true).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    void upgradeLater(Map<String, String> userCredentials, String username, String legacyHash, String password) {
+        legacyLogins.incrementAndGet();
+        try {
+            worker.execute(() -> {
+                try {
+                    String upgradedHash = passwordEncoder.encode(password);
+                    // Only swap if nobody changed the entry since the login that queued this upgrade.
+                    if (userCredentials.replace(username, legacyHash, upgradedHash)) {
+                        upgradesCompleted.incrementAndGet();
+                    } else {
+                        upgradesSkipped.incrementAndGet();
+                    }
+                } catch (RuntimeException e) {
+                    upgradesFailed.incrementAndGet();
+                    System.err.println("Migration: Could not upgrade hash for user '" + username + "': " + e.getMessage());
+                }
+            });
+            upgradesQueued.incrementAndGet();
+        } catch (RejectedExecutionException e) {
+            upgradesDropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Counters only, so polling this costs the same however many users there are.
+     */
+    Map<String, Object> progress() {
+        Map<String, Object> progress = new LinkedHashMap<>();
+        progress.put("legacyLogins", legacyLogins.get());
+        progress.put("upgradesQueued", upgradesQueued.get());
+        progress.put("upgradesCompleted", upgradesCompleted.get());
+        progress.put("upgradesSkipped", upgradesSkipped.get());
+        progress.put("upgradesDropped", upgradesDropped.get());
+        progress.put("upgradesFailed", upgradesFailed.get());
+        progress.put("queueDepth", worker.getQueue().size());
+        return progress;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        worker.shutdown();
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.demo;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * The BCrypt strength chosen for this host. Calibration times encode() from the minimum strength
+ * upwards and keeps the highest strength whose cost still fits both the latency budget and the
+ * target number of logins per second per core. Each strength step doubles the cost, so a step is
+ * skipped without measuring once its predicted time would exceed the budget.
+ */
+public record BCryptCalibration(int strength, long encodeMillis, long budgetMillis, boolean calibrated) {
+
+    private static final int SAMPLES = 3;
+
+    public static BCryptCalibration fixed(int strength) {
+        return new BCryptCalibration(strength, -1, -1, false);
+    }
+
+    public static BCryptCalibration calibrate(int minStrength, int maxStrength, long maxLatencyMillis,
+                                              double targetLoginsPerSecondPerCore) {
+        long budgetNanos = Math.min(maxLatencyMillis * 1_000_000L, (long) (1_000_000_000L / targetLoginsPerSecondPerCore));
+        int chosen = minStrength;
+        long chosenNanos = measure(minStrength);
+        for (int strength = minStrength + 1; strength <= maxStrength && chosenNanos * 2 <= budgetNanos; strength++) {
+            long nanos = measure(strength);
+            if (nanos > budgetNanos) {
+                break;
+            }
+            chosen = strength;
+            chosenNanos = nanos;
+        }
+        BCryptCalibration calibration = new BCryptCalibration(chosen, chosenNanos / 1_000_000L, budgetNanos / 1_000_000L, true);
+        System.out.println("BCrypt calibration: strength " + chosen + " (encode " + calibration.encodeMillis()
+                + " ms, budget " + calibration.budgetMillis() + " ms)");
+        return calibration;
+    }
+
+    private static long measure(int strength) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            encoder.encode("calibration-password");
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+}
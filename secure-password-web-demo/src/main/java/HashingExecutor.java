@@ -0,0 +1,42 @@
+package com.example.demo;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Fixed-size worker pool for BCrypt work. The queue is bounded so a burst of logins is rejected
+ * with a RejectedExecutionException instead of piling up behind the Tomcat connector threads.
+ * Workers stay platform threads even when spring.threads.virtual.enabled is set: BCrypt is CPU bound
+ * and salt generation goes through SecureRandom's synchronized nextBytes, which would pin carriers.
+ */
+@Component
+public class HashingExecutor {
+
+    private final ThreadPoolExecutor executor;
+
+    public HashingExecutor(@Value("${app.hashing.pool-size:0}") int poolSize,
+                           @Value("${app.hashing.queue-capacity:100}") int queueCapacity) {
+        int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("bcrypt-", 0).daemon(true).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        System.out.println("Hashing pool configured: " + threads + " threads, queue capacity " + queueCapacity);
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, executor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.demo;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.LazyInitializationExcludeFilter;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
@@ -12,7 +14,9 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 
 @SpringBootApplication(exclude = {DataSourceAutoConfiguration.class})
 public class SecurePasswordDemoApplication {
@@ -24,9 +28,32 @@ public class SecurePasswordDemoApplication {
         System.out.println("Login:    POST /login {\"username\":\"user\",\"password\":\"pass\"}");
     }
 
+    /**
+     * Only has an effect with spring.main.lazy-initialization=true, as in the startup build profile:
+     * the login path, including BCrypt calibration, is still created at startup so the first login
+     * does not wait for it; everything else is created on first use.
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public static LazyInitializationExcludeFilter loginPathBeans() {
+        return LazyInitializationExcludeFilter.forBeanTypes(AuthController.class, LoginServiceSecure.class);
+    }
+
+    @Bean
+    public BCryptCalibration bcryptCalibration(@Value("${app.bcrypt.calibrate:true}") boolean calibrate,
+                                               @Value("${app.bcrypt.strength:10}") int strength,
+                                               @Value("${app.bcrypt.max-strength:16}") int maxStrength,
+                                               @Value("${app.bcrypt.max-latency-ms:250}") long maxLatencyMs,
+                                               @Value("${app.bcrypt.target-logins-per-second-per-core:4}") double targetLoginsPerSecondPerCore) {
+        if (!calibrate) {
+            System.out.println("BCrypt strength " + strength + " (calibration off)");
+            return BCryptCalibration.fixed(strength);
+        }
+        return BCryptCalibration.calibrate(strength, maxStrength, maxLatencyMs, targetLoginsPerSecondPerCore);
+    }
+
+    @Bean
+    public PasswordEncoder passwordEncoder(BCryptCalibration bcryptCalibration) {
+        return new BCryptPasswordEncoder(bcryptCalibration.strength());
     }
 }
 
@@ -42,45 +69,62 @@ class UserCredentials {
 @RestController
 class AuthController {
     private final LoginServiceSecure loginService;
-    public AuthController(LoginServiceSecure loginService) { this.loginService = loginService; }
+    private final AuthEventLog eventLog;
+    public AuthController(LoginServiceSecure loginService, AuthEventLog eventLog) {
+        this.loginService = loginService;
+        this.eventLog = eventLog;
+    }
 
     @PostMapping("/register")
-    public ResponseEntity<String> register(@RequestBody UserCredentials credentials) {
+    public CompletableFuture<ResponseEntity<String>> register(@RequestBody UserCredentials credentials) {
         if (credentials == null || credentials.getUsername() == null || credentials.getPassword() == null ||
             credentials.getUsername().trim().isEmpty() || credentials.getPassword().isEmpty()) {
-            return ResponseEntity.badRequest().body("Username and password cannot be empty.");
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("Username and password cannot be empty."));
         }
         try {
-            boolean registered = loginService.registerUser(credentials.getUsername(), credentials.getPassword());
-            if (registered) {
-                System.out.println("API: Registration request successful for '" + credentials.getUsername() + "'.");
-                return ResponseEntity.status(HttpStatus.CREATED).body("User '" + credentials.getUsername() + "' registered successfully.");
-            } else {
-                 System.out.println("API: Registration conflict for existing user '" + credentials.getUsername() + "'.");
-                return ResponseEntity.status(HttpStatus.CONFLICT).body("Username '" + credentials.getUsername() + "' already exists.");
-            }
-        } catch (Exception e) {
-            System.err.println("API: Error during registration for user '" + credentials.getUsername() + "': " + e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Registration failed due to an internal error.");
+            return loginService.registerUserAsync(credentials.getUsername(), credentials.getPassword())
+                    .handle((registered, e) -> {
+                        if (e != null) {
+                            eventLog.log(AuthEventLog.Event.REGISTER_ERROR, credentials.getUsername(), 0, e.getClass().getSimpleName());
+                            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Registration failed due to an internal error.");
+                        }
+                        if (registered) {
+                            return ResponseEntity.status(HttpStatus.CREATED).body("User '" + credentials.getUsername() + "' registered successfully.");
+                        } else {
+                            return ResponseEntity.status(HttpStatus.CONFLICT).body("Username '" + credentials.getUsername() + "' already exists.");
+                        }
+                    });
+        } catch (RejectedExecutionException e) {
+            eventLog.log(AuthEventLog.Event.HASH_POOL_SATURATED, credentials.getUsername(), 0, "register");
+            return CompletableFuture.completedFuture(serviceBusy());
         }
     }
 
     @PostMapping("/login")
-    public ResponseEntity<String> login(@RequestBody UserCredentials credentials) {
+    public CompletableFuture<ResponseEntity<String>> login(@RequestBody UserCredentials credentials) {
          if (credentials == null || credentials.getUsername() == null || credentials.getPassword() == null) {
-            return ResponseEntity.badRequest().body("Username and password required.");
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("Username and password required."));
         }
-        System.out.println("\nAPI: Login request received for user: " + credentials.getUsername());
-        boolean loggedIn = loginService.login(credentials.getUsername(), credentials.getPassword());
-
-        if (loggedIn) {
-            System.out.println("API: Login check successful for user: " + credentials.getUsername());
-            return ResponseEntity.ok("Login successful for user '" + credentials.getUsername() + "'.");
-        } else {
-            System.out.println("API: Login check failed for user: " + credentials.getUsername());
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Login failed: Invalid username or password.");
+        try {
+            return loginService.loginAsync(credentials.getUsername(), credentials.getPassword())
+                    .thenApply(loggedIn -> {
+                        if (loggedIn) {
+                            return ResponseEntity.ok("Login successful for user '" + credentials.getUsername() + "'.");
+                        } else {
+                            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Login failed: Invalid username or password.");
+                        }
+                    });
+        } catch (RejectedExecutionException e) {
+            eventLog.log(AuthEventLog.Event.HASH_POOL_SATURATED, credentials.getUsername(), 0, "login");
+            return CompletableFuture.completedFuture(serviceBusy());
         }
     }
+
+    private static ResponseEntity<String> serviceBusy() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", "1")
+                .body("Server is busy, please retry shortly.");
+    }
 }
 
 
@@ -89,76 +133,78 @@ class LoginServiceSecure {
 
     private final Map<String, String> userCredentials = new ConcurrentHashMap<>();
     private final PasswordEncoder passwordEncoder;
+    private final HashingExecutor hashingExecutor;
+    private final AuthEventLog eventLog;
 
-    public LoginServiceSecure(PasswordEncoder passwordEncoder) {
+    public LoginServiceSecure(PasswordEncoder passwordEncoder, HashingExecutor hashingExecutor, AuthEventLog eventLog) {
         this.passwordEncoder = passwordEncoder;
+        this.hashingExecutor = hashingExecutor;
+        this.eventLog = eventLog;
         System.out.println("LoginServiceSecure: Initialized with BCryptPasswordEncoder.");
     }
 
     public boolean registerUser(String username, String password) {
         String trimmedUsername = (username != null) ? username.trim() : null;
-        System.out.println("\n--- Service: registerUser called ---");
-        System.out.println("Service: Attempting registration for username: '" + trimmedUsername + "'");
-
         if (trimmedUsername == null || trimmedUsername.isEmpty() || password == null || password.isEmpty()) {
-            System.err.println("Service: Registration failed - Username or password cannot be empty.");
+            eventLog.log(AuthEventLog.Event.REGISTER_REJECTED, trimmedUsername);
             return false;
         }
 
-        System.out.println("Service: Raw password received: '" + password + "'"); 
-        System.out.println("Service: Preparing to hash password using BCrypt...");
-
         String hashedPassword = passwordEncoder.encode(password);
-
-        System.out.println("Service: BCrypt hashing complete.");
-        System.out.println("Service:   -> Raw Password: '" + password + "'");
-        System.out.println("Service:   -> BCrypt Hash : '" + hashedPassword + "'");
-
-        System.out.println("Service: Checking if username '" + trimmedUsername + "' already exists...");
         String previousValue = userCredentials.putIfAbsent(trimmedUsername, hashedPassword);
 
         if (previousValue == null) {
-            System.out.println("Service: Username '" + trimmedUsername + "' did not exist. Added to storage.");
-            System.out.println("Service: Registration successful for '" + trimmedUsername + "'.");
-            return true; 
+            eventLog.log(AuthEventLog.Event.REGISTER_SUCCEEDED, trimmedUsername);
+            return true;
         } else {
-            System.out.println("Service: Username '" + trimmedUsername + "' already exists. Registration failed.");
-            System.out.println("Service:   -> Existing Hash in storage: '" + previousValue + "'");
-            return false; 
+            eventLog.log(AuthEventLog.Event.REGISTER_CONFLICT, trimmedUsername);
+            return false;
         }
     }
 
+    public CompletableFuture<Boolean> registerUserAsync(String username, String password) {
+        return hashingExecutor.submit(() -> registerUser(username, password));
+    }
+
+    public CompletableFuture<Boolean> loginAsync(String username, String password) {
+        return hashingExecutor.submit(() -> login(username, password));
+    }
+
     public boolean login(String username, String password) {
         String trimmedUsername = (username != null) ? username.trim() : null;
-        System.out.println("\n--- Service: login called ---");
-        System.out.println("Service: Attempting login for username: '" + trimmedUsername + "'");
-
         if (trimmedUsername == null || password == null) {
-             System.out.println("Service: Login failed - Null username or password provided.");
-             return false;
+            eventLog.log(AuthEventLog.Event.LOGIN_REJECTED, trimmedUsername);
+            return false;
         }
 
-        System.out.println("Service: Retrieving stored hash for username '" + trimmedUsername + "'...");
         String storedHash = userCredentials.get(trimmedUsername);
-
         if (storedHash == null) {
-            System.out.println("Service: Login failed - User '" + trimmedUsername + "' not found in storage.");
-            return false; 
+            eventLog.log(AuthEventLog.Event.LOGIN_UNKNOWN_USER, trimmedUsername);
+            return false;
         }
-        System.out.println("Service: Found stored BCrypt hash: '" + storedHash + "'");
-
-        System.out.println("Service:   -> Raw Password Received: '" + password + "'"); 
-        System.out.println("Service:   -> Stored BCrypt Hash  : '" + storedHash + "'");
 
         boolean match = passwordEncoder.matches(password, storedHash);
-
-        System.out.println("Service: Comparison result using passwordEncoder.matches(): " + (match ? "MATCH" : "NO MATCH"));
-
         if (match) {
-             System.out.println("Service: Password is valid for user '" + trimmedUsername + "'. Login successful.");
+            eventLog.log(AuthEventLog.Event.LOGIN_SUCCEEDED, trimmedUsername);
+            if (passwordEncoder.upgradeEncoding(storedHash)) {
+                rehashLater(trimmedUsername, storedHash, password);
+            }
         } else {
-             System.out.println("Service: Password is invalid for user '" + trimmedUsername + "'. Login failed.");
+            eventLog.log(AuthEventLog.Event.LOGIN_FAILED, trimmedUsername);
         }
         return match;
     }
+
+    private void rehashLater(String username, String storedHash, String password) {
+        try {
+            hashingExecutor.submit(() -> userCredentials.replace(username, storedHash, passwordEncoder.encode(password)))
+                    .thenAccept(replaced -> {
+                        if (replaced) {
+                            eventLog.log(AuthEventLog.Event.PASSWORD_REHASHED, username);
+                        }
+                    });
+        } catch (RejectedExecutionException e) {
+            // The pool is saturated; the hash is upgraded on a later login instead.
+        }
+    }
 }
@@ -0,0 +1,115 @@
+package com.secureloginimplementation.demo;
+
+ import io.micrometer.core.instrument.Counter;
+ import io.micrometer.core.instrument.Gauge;
+ import io.micrometer.core.instrument.MeterRegistry;
+ import org.springframework.beans.factory.annotation.Value;
+ import org.springframework.stereotype.Component;
+
+ import java.util.concurrent.TimeUnit;
+ import java.util.concurrent.atomic.AtomicInteger;
+ import java.util.concurrent.locks.ReentrantLock;
+
+ /**
+  * AIMD limit on the number of logins in flight on this node. Each completed login reports how long
+  * it took from admission to response, which includes the wait for a BCrypt worker. When that exceeds
+  * app.rate-limit.adaptive.latency-target-ms, or the hashing queue holds more than
+  * max-queue-per-thread tasks per worker, the limit is multiplied by the backoff factor (at most once
+  * per latency target, so one overload backs off once); otherwise it grows by 1/limit per login, about
+  * one slot per round of logins. Logins over the limit are shed with a 503 before they reach the
+  * hashing pool, so the node stops admitting work while latency is still bounded rather than after
+  * the queue has filled.
+  */
+ @Component
+ public class AdaptiveConcurrencyLimiter {
+
+     private final boolean enabled;
+     private final HashingExecutor hashingExecutor;
+     private final int minLimit;
+     private final int maxLimit;
+     private final long latencyTargetNanos;
+     private final int maxQueuedTasks;
+     private final double backoff;
+     private final AtomicInteger inFlight = new AtomicInteger();
+     private final ReentrantLock lock = new ReentrantLock();
+     private final Counter shed;
+     private volatile int limit;
+     private double exactLimit;
+     private long lastDecrease;
+
+     public AdaptiveConcurrencyLimiter(@Value("${app.rate-limit.adaptive.enabled:false}") boolean enabled,
+                                       @Value("${app.rate-limit.adaptive.min-limit:1}") int minLimit,
+                                       @Value("${app.rate-limit.adaptive.max-limit:0}") int maxLimit,
+                                       @Value("${app.rate-limit.adaptive.latency-target-ms:0}") long latencyTargetMs,
+                                       @Value("${app.rate-limit.adaptive.max-queue-per-thread:2}") int maxQueuePerThread,
+                                       @Value("${app.rate-limit.adaptive.backoff:0.9}") double backoff,
+                                       HashingExecutor hashingExecutor, BCryptCalibration bcryptCalibration,
+                                       MeterRegistry meterRegistry) {
+         this.enabled = enabled;
+         this.hashingExecutor = hashingExecutor;
+         this.minLimit = Math.max(1, minLimit);
+         // Past threads + queue capacity the hashing pool rejects anyway.
+         this.maxLimit = maxLimit > 0 ? maxLimit : hashingExecutor.threads() + hashingExecutor.queueCapacity();
+         // By default a login may wait behind about two others before it counts as slow.
+         long targetMs = latencyTargetMs > 0 ? latencyTargetMs
+                 : bcryptCalibration.encodeMillis() > 0 ? Math.max(50, 3 * bcryptCalibration.encodeMillis()) : 500;
+         this.latencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(targetMs);
+         this.maxQueuedTasks = hashingExecutor.threads() * maxQueuePerThread;
+         this.backoff = backoff;
+         this.exactLimit = Math.max(this.minLimit, Math.min(this.maxLimit, hashingExecutor.threads() * 2));
+         this.limit = (int) exactLimit;
+         this.lastDecrease = System.nanoTime() - latencyTargetNanos;
+         this.shed = meterRegistry.counter("ratelimit.shed");
+         if (enabled) {
+             Gauge.builder("ratelimit.adaptive.limit", this, l -> l.limit).register(meterRegistry);
+             Gauge.builder("ratelimit.adaptive.in-flight", inFlight, AtomicInteger::get).register(meterRegistry);
+             System.out.println("Adaptive login concurrency limit enabled: start " + limit + ", range " + this.minLimit + "-"
+                     + this.maxLimit + ", latency target " + targetMs + " ms");
+         }
+     }
+
+     public boolean isEnabled() {
+         return enabled;
+     }
+
+     /**
+      * Admits a login unless the limit is reached. Every admitted login must be followed by exactly
+      * one release or cancel.
+      */
+     public boolean tryAcquire() {
+         if (inFlight.incrementAndGet() > limit) {
+             inFlight.decrementAndGet();
+             shed.increment();
+             return false;
+         }
+         return true;
+     }
+
+     /**
+      * Gives the slot back without adjusting the limit, for logins refused before doing any work.
+      */
+     public void cancel() {
+         inFlight.decrementAndGet();
+     }
+
+     public void release(long latencyNanos) {
+         int current = inFlight.getAndDecrement();
+         boolean congested = latencyNanos > latencyTargetNanos || hashingExecutor.queueDepth() > maxQueuedTasks;
+         lock.lock();
+         try {
+             if (congested) {
+                 long now = System.nanoTime();
+                 if (now - lastDecrease >= latencyTargetNanos) {
+                     exactLimit = Math.max(minLimit, exactLimit * backoff);
+                     lastDecrease = now;
+                 }
+             } else if (current * 2 >= limit) {
+                 // Only grow while the limit is actually in use, or an idle node drifts to maxLimit.
+                 exactLimit = Math.min(maxLimit, exactLimit + 1.0 / exactLimit);
+             }
+             limit = (int) exactLimit;
+         } finally {
+             lock.unlock();
+         }
+     }
+ }
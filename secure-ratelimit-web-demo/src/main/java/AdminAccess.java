@@ -0,0 +1,55 @@
+package com.secureloginimplementation.demo;
+
+ import jakarta.servlet.http.HttpServletRequest;
+ import org.springframework.beans.factory.annotation.Value;
+ import org.springframework.stereotype.Component;
+
+ import java.net.InetAddress;
+ import java.net.UnknownHostException;
+ import java.nio.charset.StandardCharsets;
+ import java.security.MessageDigest;
+
+ /**
+  * Decides who may use the admin endpoints: reading and changing the rate limits, the BCrypt
+  * calibration and /register/bulk. A caller must be on this host, send app.admin.token in the
+  * X-Admin-Token header and carry no forwarding headers. A reverse proxy on the same host also
+  * connects from loopback, so the address alone would let any client through it; the forwarding
+  * headers such a proxy adds give it away, and the token covers one that adds none. With no token
+  * configured the endpoints are closed.
+  */
+ @Component
+ public class AdminAccess {
+
+     static final String TOKEN_HEADER = "X-Admin-Token";
+
+     private static final String[] FORWARDING_HEADERS = {"Forwarded", "X-Forwarded-For", "X-Real-IP"};
+
+     private final byte[] token;
+
+     public AdminAccess(@Value("${app.admin.token:}") String token) {
+         this.token = token.isBlank() ? null : token.getBytes(StandardCharsets.UTF_8);
+         if (this.token == null) {
+             System.out.println("Admin endpoints disabled: app.admin.token is not set");
+         }
+     }
+
+     public boolean isAllowed(HttpServletRequest request) {
+         if (token == null) {
+             return false;
+         }
+         for (String header : FORWARDING_HEADERS) {
+             if (request.getHeader(header) != null) {
+                 return false;
+             }
+         }
+         String presented = request.getHeader(TOKEN_HEADER);
+         if (presented == null || !MessageDigest.isEqual(token, presented.getBytes(StandardCharsets.UTF_8))) {
+             return false;
+         }
+         try {
+             return InetAddress.getByName(request.getRemoteAddr()).isLoopbackAddress();
+         } catch (UnknownHostException e) {
+             return false;
+         }
+     }
+ }
@@ -0,0 +1,69 @@
+package com.secureloginimplementation.demo;
+
+ import jakarta.servlet.http.HttpServletRequest;
+ import org.springframework.http.HttpStatus;
+ import org.springframework.http.ResponseEntity;
+ import org.springframework.web.bind.annotation.GetMapping;
+ import org.springframework.web.bind.annotation.PathVariable;
+ import org.springframework.web.bind.annotation.PutMapping;
+ import org.springframework.web.bind.annotation.RequestBody;
+ import org.springframework.web.bind.annotation.RestController;
+
+ @RestController
+ public class AdminController {
+
+     private final BCryptCalibration bcryptCalibration;
+     private final RateLimitingService rateLimitingService;
+     private final AdminAccess adminAccess;
+
+     public AdminController(BCryptCalibration bcryptCalibration, RateLimitingService rateLimitingService,
+                            AdminAccess adminAccess) {
+         this.bcryptCalibration = bcryptCalibration;
+         this.rateLimitingService = rateLimitingService;
+         this.adminAccess = adminAccess;
+     }
+
+     @GetMapping("/admin/bcrypt")
+     public ResponseEntity<?> bcrypt(HttpServletRequest request) {
+         if (!adminAccess.isAllowed(request)) {
+             return forbidden();
+         }
+         return ResponseEntity.ok(bcryptCalibration);
+     }
+
+     /**
+      * The current limits, which tell a client exactly how fast it may guess, so they are admin-only too.
+      */
+     @GetMapping("/admin/rate-limit")
+     public ResponseEntity<?> rateLimits(HttpServletRequest request) {
+         if (!adminAccess.isAllowed(request)) {
+             return forbidden();
+         }
+         return ResponseEntity.ok(rateLimitingService.limits());
+     }
+
+     /**
+      * Replaces the limit of one dimension, e.g.
+      * {"capacity":10,"refillRate":10,"refillPeriod":1,"refillUnit":"MINUTES"} for "ip". Admin-only,
+      * since anyone who can change the limits can lift them.
+      */
+     @PutMapping("/admin/rate-limit/{dimension}")
+     public ResponseEntity<?> reconfigureRateLimit(@PathVariable String dimension,
+                                                   @RequestBody RateLimitingService.LimitSettings settings,
+                                                   HttpServletRequest request) {
+         if (!adminAccess.isAllowed(request)) {
+             return forbidden();
+         }
+         try {
+             rateLimitingService.reconfigure(dimension, settings);
+         } catch (IllegalArgumentException e) {
+             return ResponseEntity.badRequest().body(e.getMessage());
+         }
+         return ResponseEntity.ok(rateLimitingService.limits());
+     }
+
+     private static ResponseEntity<String> forbidden() {
+         return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                 .body("Admin endpoints require " + AdminAccess.TOKEN_HEADER + " from localhost.");
+     }
+ }
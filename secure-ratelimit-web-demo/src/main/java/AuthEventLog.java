@@ -0,0 +1,207 @@
+package com.secureloginimplementation.demo;
+
+ import jakarta.annotation.PreDestroy;
+ import org.slf4j.Logger;
+ import org.slf4j.LoggerFactory;
+ import org.springframework.beans.factory.annotation.Value;
+ import org.springframework.stereotype.Component;
+
+ import java.util.concurrent.ThreadLocalRandom;
+ import java.util.concurrent.TimeUnit;
+ import java.util.concurrent.atomic.AtomicLong;
+ import java.util.concurrent.locks.LockSupport;
+
+ /**
+  * Structured event log for the login hot path. Callers claim a slot in a preallocated ring buffer and
+  * fill it in place; a single background thread drains the ring and writes key=value lines through
+  * SLF4J, so request threads never touch the console. When the ring is full the event is dropped and
+  * counted instead of blocking the caller.
+  * <p>
+  * Events carry at most a username, a number and a constant detail string. There is no way to pass a
+  * password or hash, and usernames are truncated and stripped of control characters before output.
+  * Events at INFO and below can be sampled with app.auth-log.sample-rate (1 in N).
+  */
+ @Component
+ public class AuthEventLog {
+
+     public enum Level { DEBUG, INFO, WARN, ERROR }
+
+     public enum Event {
+         REGISTER_SUCCEEDED(Level.INFO),
+         REGISTER_CONFLICT(Level.INFO),
+         REGISTER_REJECTED(Level.WARN),
+         REGISTER_ERROR(Level.ERROR),
+         BULK_IMPORT_STARTED(Level.INFO),
+         LOGIN_SUCCEEDED(Level.INFO),
+         LOGIN_FAILED(Level.INFO),
+         LOGIN_UNKNOWN_USER(Level.INFO),
+         LOGIN_REJECTED(Level.WARN),
+         HASH_POOL_SATURATED(Level.WARN),
+         PASSWORD_REHASHED(Level.INFO),
+         RATE_LIMIT_ALLOWED(Level.DEBUG),
+         RATE_LIMIT_EXCEEDED(Level.WARN),
+         LOAD_SHED(Level.WARN);
+
+         final Level level;
+
+         Event(Level level) {
+             this.level = level;
+         }
+     }
+
+     private static final Logger log = LoggerFactory.getLogger("auth.events");
+     private static final int MAX_SUBJECT_LENGTH = 64;
+
+     private final Slot[] ring;
+     private final int mask;
+     private final AtomicLong tail = new AtomicLong();
+     private final AtomicLong dropped = new AtomicLong();
+     private final Level minLevel;
+     private final int sampleRate;
+     private final Thread drainer;
+     private volatile boolean running = true;
+     private long head;
+
+     public AuthEventLog(@Value("${app.auth-log.level:INFO}") String level,
+                         @Value("${app.auth-log.sample-rate:1}") int sampleRate,
+                         @Value("${app.auth-log.buffer-size:8192}") int bufferSize) {
+         int capacity = Integer.highestOneBit(Math.max(2, bufferSize - 1)) << 1;
+         this.ring = new Slot[capacity];
+         for (int i = 0; i < capacity; i++) {
+             ring[i] = new Slot(i);
+         }
+         this.mask = capacity - 1;
+         this.minLevel = Level.valueOf(level.toUpperCase());
+         this.sampleRate = Math.max(1, sampleRate);
+         this.drainer = Thread.ofPlatform().name("auth-event-log").daemon(true).start(this::drainLoop);
+     }
+
+     /**
+      * Whether events of this kind are written at all, for callers whose subject costs something to build.
+      */
+     public boolean isEnabled(Event event) {
+         return event.level.ordinal() >= minLevel.ordinal();
+     }
+
+     public void log(Event event, String subject) {
+         log(event, subject, 0, null);
+     }
+
+     public void log(Event event, String subject, long value) {
+         log(event, subject, value, null);
+     }
+
+     public void log(Event event, String subject, long value, String detail) {
+         if (event.level.ordinal() < minLevel.ordinal()) {
+             return;
+         }
+         if (sampleRate > 1 && event.level.ordinal() <= Level.INFO.ordinal()
+             && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+             return;
+         }
+         long position = tail.get();
+         Slot slot;
+         while (true) {
+             slot = ring[(int) position & mask];
+             long available = slot.sequence - position;
+             if (available == 0) {
+                 if (tail.compareAndSet(position, position + 1)) {
+                     break;
+                 }
+                 position = tail.get();
+             } else if (available < 0) {
+                 dropped.incrementAndGet();
+                 return;
+             } else {
+                 position = tail.get();
+             }
+         }
+         slot.event = event;
+         slot.subject = subject;
+         slot.value = value;
+         slot.detail = detail;
+         slot.sequence = position + 1;
+     }
+
+     private void drainLoop() {
+         while (running) {
+             if (!drainAvailable()) {
+                 reportDropped();
+                 LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(2));
+             }
+         }
+         drainAvailable();
+         reportDropped();
+     }
+
+     private boolean drainAvailable() {
+         boolean drained = false;
+         while (true) {
+             Slot slot = ring[(int) head & mask];
+             if (slot.sequence != head + 1) {
+                 return drained;
+             }
+             write(slot.event, slot.subject, slot.value, slot.detail);
+             slot.subject = null;
+             slot.detail = null;
+             slot.sequence = head + ring.length;
+             head++;
+             drained = true;
+         }
+     }
+
+     private void write(Event event, String subject, long value, String detail) {
+         String user = redact(subject);
+         switch (event.level) {
+             case DEBUG -> log.debug("event={} user={} value={} detail={}", event, user, value, detail);
+             case INFO -> log.info("event={} user={} value={} detail={}", event, user, value, detail);
+             case WARN -> log.warn("event={} user={} value={} detail={}", event, user, value, detail);
+             case ERROR -> log.error("event={} user={} value={} detail={}", event, user, value, detail);
+         }
+     }
+
+     private void reportDropped() {
+         long count = dropped.getAndSet(0);
+         if (count > 0) {
+             log.warn("event=EVENTS_DROPPED value={}", count);
+         }
+     }
+
+     private static String redact(String subject) {
+         if (subject == null) {
+             return "-";
+         }
+         String value = subject.length() > MAX_SUBJECT_LENGTH ? subject.substring(0, MAX_SUBJECT_LENGTH) : subject;
+         StringBuilder cleaned = null;
+         for (int i = 0; i < value.length(); i++) {
+             char c = value.charAt(i);
+             if (Character.isISOControl(c) || c == ' ') {
+                 if (cleaned == null) {
+                     cleaned = new StringBuilder(value.length()).append(value, 0, i);
+                 }
+                 cleaned.append('_');
+             } else if (cleaned != null) {
+                 cleaned.append(c);
+             }
+         }
+         return cleaned != null ? cleaned.toString() : value;
+     }
+
+     @PreDestroy
+     public void shutdown() throws InterruptedException {
+         running = false;
+         drainer.join(TimeUnit.SECONDS.toMillis(5));
+     }
+
+     private static final class Slot {
+         volatile long sequence;
+         Event event;
+         String subject;
+         long value;
+         String detail;
+
+         Slot(long sequence) {
+             this.sequence = sequence;
+         }
+     }
+ }
@@ -0,0 +1,107 @@
+package com.secureloginimplementation.demo;
+
+ import io.github.bucket4j.BucketConfiguration;
+ import io.github.bucket4j.BucketState;
+ import io.github.bucket4j.MathType;
+ import io.github.bucket4j.distributed.remote.RemoteBucketState;
+ import io.github.bucket4j.distributed.remote.RemoteStat;
+ import io.github.bucket4j.distributed.serialization.InternalSerializationHelper;
+ import io.github.bucket4j.distributed.versioning.Versions;
+ import org.ehcache.spi.serialization.Serializer;
+
+ import java.nio.ByteBuffer;
+ import java.util.Arrays;
+
+ /**
+  * Off-heap serializer for the byte[] bucket states Bucket4j keeps in rateLimitCache. Every state
+  * starts with the serialized BucketConfiguration, which is the same for all keys of a rate-limit
+  * dimension and makes up most of the ~100 bytes. RateLimitingService registers each configuration
+  * here, and a state starting with a registered prefix is stored as a one-byte prefix id plus the
+  * remaining bytes; anything else is stored as-is behind id 0.
+  * <p>
+  * Prefix ids are only meaningful inside this JVM, so the serializer must not be used for a disk
+  * tier that outlives the process.
+  */
+ public class BucketStateSerializer implements Serializer<byte[]> {
+
+     private static final int RAW = 0;
+     private static final int MAX_PREFIXES = 255;
+
+     private static volatile byte[][] prefixes = new byte[0][];
+
+     public BucketStateSerializer(ClassLoader classLoader) {
+     }
+
+     /**
+      * Adds the serialized form of the configuration to the dictionary. Registering the same
+      * configuration twice is a no-op.
+      */
+     public static synchronized void register(BucketConfiguration configuration) {
+         byte[] prefix = commonPrefix(sampleState(configuration, 0L), sampleState(configuration, -1L));
+         for (byte[] existing : prefixes) {
+             if (Arrays.equals(existing, prefix)) {
+                 return;
+             }
+         }
+         if (prefixes.length == MAX_PREFIXES) {
+             return;
+         }
+         byte[][] extended = Arrays.copyOf(prefixes, prefixes.length + 1);
+         extended[prefixes.length] = prefix;
+         prefixes = extended;
+     }
+
+     /**
+      * Id of the registered prefix the state starts with, or 0 if it matches none.
+      */
+     static int prefixId(byte[] state) {
+         byte[][] dictionary = prefixes;
+         for (int i = 0; i < dictionary.length; i++) {
+             byte[] prefix = dictionary[i];
+             if (state.length >= prefix.length
+                     && Arrays.equals(state, 0, prefix.length, prefix, 0, prefix.length)) {
+                 return i + 1;
+             }
+         }
+         return RAW;
+     }
+
+     static byte[] prefix(int id) {
+         return id == RAW ? new byte[0] : prefixes[id - 1];
+     }
+
+     @Override
+     public ByteBuffer serialize(byte[] state) {
+         int id = prefixId(state);
+         byte[] prefix = prefix(id);
+         ByteBuffer buffer = ByteBuffer.allocate(1 + state.length - prefix.length);
+         buffer.put((byte) id).put(state, prefix.length, state.length - prefix.length);
+         return buffer.flip();
+     }
+
+     @Override
+     public byte[] read(ByteBuffer buffer) {
+         byte[] prefix = prefix(buffer.get() & 0xFF);
+         byte[] state = Arrays.copyOf(prefix, prefix.length + buffer.remaining());
+         buffer.get(state, prefix.length, buffer.remaining());
+         return state;
+     }
+
+     @Override
+     public boolean equals(byte[] state, ByteBuffer buffer) {
+         return Arrays.equals(state, read(buffer));
+     }
+
+     private static byte[] sampleState(BucketConfiguration configuration, long timeNanos) {
+         BucketState state = BucketState.createInitialState(configuration, MathType.INTEGER_64_BITS, timeNanos);
+         // RateLimitingService always sets a configuration version, which switches the state to a different
+         // format version in its first bytes; the version number itself comes last.
+         return InternalSerializationHelper.serializeState(new RemoteBucketState(state, new RemoteStat(0L), 0L),
+                 Versions.getLatest());
+     }
+
+     private static byte[] commonPrefix(byte[] a, byte[] b) {
+         int mismatch = Arrays.mismatch(a, b);
+         return mismatch < 0 ? a : Arrays.copyOf(a, mismatch);
+     }
+ }
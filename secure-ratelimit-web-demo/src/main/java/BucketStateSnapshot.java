@@ -0,0 +1,317 @@
+package com.secureloginimplementation.demo;
+
+ import io.github.bucket4j.distributed.serialization.InternalSerializationHelper;
+
+ import javax.cache.Cache;
+ import java.io.ByteArrayOutputStream;
+ import java.io.DataOutputStream;
+ import java.io.IOException;
+ import java.io.UncheckedIOException;
+ import java.nio.ByteBuffer;
+ import java.nio.MappedByteBuffer;
+ import java.nio.channels.FileChannel;
+ import java.nio.channels.FileLock;
+ import java.nio.charset.StandardCharsets;
+ import java.nio.file.Files;
+ import java.nio.file.Path;
+ import java.nio.file.StandardCopyOption;
+ import java.nio.file.StandardOpenOption;
+ import java.util.ArrayList;
+ import java.util.BitSet;
+ import java.util.HashMap;
+ import java.util.Iterator;
+ import java.util.List;
+ import java.util.Map;
+ import java.util.Set;
+ import java.util.concurrent.ConcurrentHashMap;
+ import java.util.concurrent.Executors;
+ import java.util.concurrent.ScheduledExecutorService;
+ import java.util.concurrent.TimeUnit;
+ import java.util.zip.CRC32C;
+
+ /**
+  * Keeps rateLimitCache across restarts in a local file, so a deploy does not hand every client a fresh
+  * burst allowance. RateLimitingService reports each key whose bucket changed; on a fixed interval the
+  * current states of those keys are appended to the file. Once the appended part outgrows the last full
+  * snapshot, the file is rewritten from the cache into a temporary file and renamed over the old one.
+  * On startup the file is memory-mapped and read sequentially, later records for a key winning, and
+  * every bucket that has not refilled completely yet is put back into the cache.
+  * <p>
+  * Layout: a 16-byte header (magic, version), then batches of [int length][int CRC32C][records]. A
+  * record is either a configuration prefix (type 1, id, bytes), written once per file before the first
+  * state that uses it, or a bucket state (type 2, UTF-8 key, prefix id, rest of the state), using the
+  * prefix dictionary of BucketStateSerializer so a state takes about 30 bytes instead of 100. Reading
+  * stops at the first batch that is incomplete or fails its checksum, i.e. at most the last interval
+  * is lost if the process dies mid-write. Appends are not forced to disk: they survive a process
+  * restart through the page cache, only a host crash loses the unforced tail.
+  */
+ public class BucketStateSnapshot implements AutoCloseable {
+
+     private static final long MAGIC = 0x524c42554b534e50L;
+     private static final int VERSION = 1;
+     private static final int HEADER_SIZE = 16;
+     private static final byte PREFIX_RECORD = 1;
+     private static final byte STATE_RECORD = 2;
+     private static final int MAX_BATCH_BYTES = 1 << 20;
+     private static final long MIN_COMPACTION_BYTES = 1 << 20;
+
+     private final Cache<String, byte[]> cache;
+     private final Path file;
+     private final Path tempFile;
+     private final FileChannel lockChannel;
+     private final FileLock fileLock;
+     private final Set<String> updatedKeys = ConcurrentHashMap.newKeySet();
+     private final ScheduledExecutorService writer;
+     private final BitSet prefixesInFile = new BitSet();
+     private FileChannel channel;
+     private long fullSnapshotBytes;
+     private long appendedBytes;
+
+     public BucketStateSnapshot(Cache<String, byte[]> cache, Path file, long intervalMillis) {
+         this.cache = cache;
+         this.file = file;
+         this.tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+         try {
+             if (file.getParent() != null) {
+                 Files.createDirectories(file.getParent());
+             }
+             // The snapshot itself is replaced on compaction, so the lock is held on a file that stays put.
+             this.lockChannel = FileChannel.open(file.resolveSibling(file.getFileName() + ".lock"),
+                     StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             this.fileLock = lockChannel.tryLock();
+             if (fileLock == null) {
+                 lockChannel.close();
+                 throw new IllegalStateException("Rate limit snapshot " + file + " is in use by another process.");
+             }
+             restore();
+         } catch (IOException e) {
+             throw new UncheckedIOException("Could not open rate limit snapshot " + file, e);
+         }
+         this.writer = Executors.newSingleThreadScheduledExecutor(
+                 Thread.ofPlatform().name("rate-limit-snapshot").daemon(true).factory());
+         writer.scheduleWithFixedDelay(this::write, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+     }
+
+     /**
+      * Marks the bucket of the key as changed since the last snapshot.
+      */
+     public void bucketUpdated(String key) {
+         updatedKeys.add(key);
+     }
+
+     @Override
+     public void close() throws IOException {
+         writer.shutdown();
+         try {
+             writer.awaitTermination(10, TimeUnit.SECONDS);
+         } catch (InterruptedException e) {
+             Thread.currentThread().interrupt();
+         }
+         synchronized (this) {
+             write();
+             channel.force(false);
+             channel.close();
+             fileLock.release();
+             lockChannel.close();
+         }
+     }
+
+     private void restore() throws IOException {
+         long start = System.nanoTime();
+         Map<String, byte[]> states = new HashMap<>();
+         int records = 0;
+         boolean truncated = false;
+         if (Files.exists(file) && Files.size(file) >= HEADER_SIZE) {
+             try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+                 MappedByteBuffer mapped = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+                 if (mapped.getLong() != MAGIC || mapped.getInt() != VERSION) {
+                     // Losing the limits of one restart beats refusing to start; the file is replaced below.
+                     System.err.println("Rate limit snapshot: " + file + " is not a version " + VERSION + " snapshot, ignoring it.");
+                     mapped.position(mapped.limit());
+                 } else {
+                     mapped.position(HEADER_SIZE);
+                 }
+                 Map<Integer, byte[]> prefixes = new HashMap<>();
+                 CRC32C crc = new CRC32C();
+                 while (mapped.remaining() >= 8) {
+                     int length = mapped.getInt();
+                     int checksum = mapped.getInt();
+                     if (length < 0 || length > mapped.remaining()) {
+                         truncated = true;
+                         break;
+                     }
+                     ByteBuffer batch = mapped.slice(mapped.position(), length);
+                     crc.reset();
+                     crc.update(batch.duplicate());
+                     if ((int) crc.getValue() != checksum) {
+                         truncated = true;
+                         break;
+                     }
+                     records += readBatch(batch, prefixes, states);
+                     mapped.position(mapped.position() + length);
+                 }
+                 truncated |= mapped.hasRemaining();
+             }
+         }
+
+         // Buckets that have refilled since they were written are no different from new ones.
+         long nowNanos = System.currentTimeMillis() * 1_000_000L;
+         states.values().removeIf(state ->
+                 InternalSerializationHelper.deserializeState(state).calculateFullRefillingTime(nowNanos) <= 0);
+         cache.putAll(states);
+
+         // Start a new file holding exactly what was restored, so the old appends are compacted away.
+         writeFull(batches -> {
+             for (Map.Entry<String, byte[]> entry : states.entrySet()) {
+                 batches.add(entry.getKey(), entry.getValue());
+             }
+         });
+         System.out.println("Rate limit snapshot: restored " + states.size() + " buckets from " + records + " records in "
+                 + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms from " + file
+                 + (truncated ? " (ignored an incomplete tail)" : ""));
+     }
+
+     private static int readBatch(ByteBuffer batch, Map<Integer, byte[]> prefixes, Map<String, byte[]> states) {
+         int records = 0;
+         while (batch.hasRemaining()) {
+             byte type = batch.get();
+             if (type == PREFIX_RECORD) {
+                 int id = batch.get() & 0xFF;
+                 byte[] prefix = new byte[batch.getShort() & 0xFFFF];
+                 batch.get(prefix);
+                 prefixes.put(id, prefix);
+             } else {
+                 byte[] key = new byte[batch.getShort() & 0xFFFF];
+                 batch.get(key);
+                 byte[] prefix = prefixes.getOrDefault(batch.get() & 0xFF, new byte[0]);
+                 int suffixLength = batch.getShort() & 0xFFFF;
+                 byte[] state = new byte[prefix.length + suffixLength];
+                 System.arraycopy(prefix, 0, state, 0, prefix.length);
+                 batch.get(state, prefix.length, suffixLength);
+                 states.put(new String(key, StandardCharsets.UTF_8), state);
+                 records++;
+             }
+         }
+         return records;
+     }
+
+     private synchronized void write() {
+         try {
+             if (appendedBytes > Math.max(fullSnapshotBytes, MIN_COMPACTION_BYTES)) {
+                 // Keys changed from here on are picked up by the iteration or by the next append.
+                 updatedKeys.clear();
+                 writeFull(batches -> {
+                     for (Cache.Entry<String, byte[]> entry : cache) {
+                         batches.add(entry.getKey(), entry.getValue());
+                     }
+                 });
+             } else if (!updatedKeys.isEmpty()) {
+                 appendUpdated();
+             }
+         } catch (IOException | RuntimeException e) {
+             System.err.println("Rate limit snapshot to " + file + " failed: " + e.getMessage());
+         }
+     }
+
+     private void appendUpdated() throws IOException {
+         List<String> keys = new ArrayList<>();
+         for (Iterator<String> it = updatedKeys.iterator(); it.hasNext(); ) {
+             keys.add(it.next());
+             it.remove();
+         }
+         BatchWriter batches = new BatchWriter(channel);
+         for (int from = 0; from < keys.size(); from += 1000) {
+             // Keys that expired in the meantime are simply missing here; restoring their older state is
+             // harmless, because a bucket only expires once it has refilled.
+             for (Map.Entry<String, byte[]> entry : cache.getAll(Set.copyOf(keys.subList(from, Math.min(keys.size(), from + 1000)))).entrySet()) {
+                 batches.add(entry.getKey(), entry.getValue());
+             }
+         }
+         appendedBytes += batches.finish();
+     }
+
+     private void writeFull(StateSource source) throws IOException {
+         prefixesInFile.clear();
+         long written;
+         try (FileChannel out = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                 StandardOpenOption.TRUNCATE_EXISTING)) {
+             out.write(ByteBuffer.allocate(HEADER_SIZE).putLong(MAGIC).putInt(VERSION).putInt(0).flip());
+             BatchWriter batches = new BatchWriter(out);
+             source.writeTo(batches);
+             written = batches.finish();
+             out.force(false);
+         }
+         if (channel != null) {
+             channel.close();
+         }
+         Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+         channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+         fullSnapshotBytes = written;
+         appendedBytes = 0;
+     }
+
+     private interface StateSource {
+         void writeTo(BatchWriter batches) throws IOException;
+     }
+
+     /**
+      * Encodes records into checksummed batches of up to MAX_BATCH_BYTES and writes them to the channel.
+      */
+     private final class BatchWriter {
+
+         private final FileChannel out;
+         private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+         private final DataOutputStream data = new DataOutputStream(buffer);
+         private final CRC32C crc = new CRC32C();
+         private long written;
+
+         BatchWriter(FileChannel out) {
+             this.out = out;
+         }
+
+         void add(String key, byte[] state) throws IOException {
+             if (state == null) {
+                 return;
+             }
+             int prefixId = BucketStateSerializer.prefixId(state);
+             byte[] prefix = BucketStateSerializer.prefix(prefixId);
+             if (prefixId != 0 && !prefixesInFile.get(prefixId)) {
+                 data.writeByte(PREFIX_RECORD);
+                 data.writeByte(prefixId);
+                 data.writeShort(prefix.length);
+                 data.write(prefix);
+                 prefixesInFile.set(prefixId);
+             }
+             byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+             data.writeByte(STATE_RECORD);
+             data.writeShort(keyBytes.length);
+             data.write(keyBytes);
+             data.writeByte(prefixId);
+             data.writeShort(state.length - prefix.length);
+             data.write(state, prefix.length, state.length - prefix.length);
+             if (buffer.size() >= MAX_BATCH_BYTES) {
+                 flush();
+             }
+         }
+
+         long finish() throws IOException {
+             flush();
+             return written;
+         }
+
+         private void flush() throws IOException {
+             if (buffer.size() == 0) {
+                 return;
+             }
+             byte[] records = buffer.toByteArray();
+             buffer.reset();
+             crc.reset();
+             crc.update(records);
+             ByteBuffer batch = ByteBuffer.allocate(8 + records.length)
+                     .putInt(records.length).putInt((int) crc.getValue()).put(records).flip();
+             while (batch.hasRemaining()) {
+                 written += out.write(batch);
+             }
+         }
+     }
+ }
@@ -0,0 +1,216 @@
+package com.secureloginimplementation.demo;
+
+ import com.fasterxml.jackson.databind.ObjectMapper;
+ import org.springframework.beans.factory.annotation.Value;
+ import org.springframework.stereotype.Service;
+
+ import java.io.BufferedReader;
+ import java.io.BufferedWriter;
+ import java.io.IOException;
+ import java.io.InputStream;
+ import java.io.InputStreamReader;
+ import java.io.OutputStream;
+ import java.io.OutputStreamWriter;
+ import java.io.Writer;
+ import java.nio.charset.StandardCharsets;
+ import java.util.concurrent.RejectedExecutionException;
+ import java.util.concurrent.Semaphore;
+ import java.util.concurrent.TimeUnit;
+ import java.util.concurrent.locks.LockSupport;
+ import java.util.concurrent.locks.ReentrantLock;
+
+ /**
+  * Registers users from an NDJSON or CSV stream. Records are parsed one line at a time and hashed on
+  * the shared HashingExecutor, so an import competes with interactive logins under the same bound
+  * instead of bringing its own threads. At most maxInFlight records (by default one per hashing
+  * thread) are queued at once, leaving the rest of the queue to logins; when the pool rejects a record
+  * the import pauses and retries, which slows down reading the upload instead of failing the record.
+  * Lines longer than max-line-length are reported as TOO_LONG, and reading stops after max-records
+  * records with a LIMIT_REACHED line. One result line is written per record, in completion order.
+  */
+ @Service
+ public class BulkRegistrationService {
+
+     public enum Format { NDJSON, CSV }
+
+     public enum Status { CREATED, CONFLICT, INVALID, TOO_LONG, ERROR, LIMIT_REACHED }
+
+     record Result(long line, String username, Status status) {}
+
+     private static final int FLUSH_EVERY = 256;
+     private static final long BUSY_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+     private final LoginServiceSecure loginService;
+     private final ObjectMapper objectMapper;
+     private final int maxInFlight;
+     private final int maxLineLength;
+     private final long maxRecords;
+
+     public BulkRegistrationService(LoginServiceSecure loginService, ObjectMapper objectMapper, HashingExecutor hashingExecutor,
+                                    @Value("${app.bulk-import.max-in-flight:0}") int maxInFlight,
+                                    @Value("${app.bulk-import.max-line-length:1024}") int maxLineLength,
+                                    @Value("${app.bulk-import.max-records:100000}") long maxRecords) {
+         this.loginService = loginService;
+         this.objectMapper = objectMapper;
+         this.maxInFlight = maxInFlight > 0 ? maxInFlight : hashingExecutor.threads();
+         this.maxLineLength = maxLineLength;
+         this.maxRecords = maxRecords;
+     }
+
+     public void importUsers(InputStream body, Format format, OutputStream out) throws IOException {
+         LineReader reader = new LineReader(new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8)), maxLineLength);
+         ResultWriter results = new ResultWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+         Semaphore window = new Semaphore(maxInFlight);
+         long lineNumber = 0;
+         long records = 0;
+         String line;
+         try {
+             while (!results.failed() && (line = reader.next()) != null) {
+                 lineNumber++;
+                 if (reader.tooLong) {
+                     results.write(new Result(lineNumber, null, Status.TOO_LONG));
+                     continue;
+                 }
+                 if (line.isBlank() || (format == Format.CSV && lineNumber == 1 && line.trim().equalsIgnoreCase("username,password"))) {
+                     continue;
+                 }
+                 if (++records > maxRecords) {
+                     results.write(new Result(lineNumber, null, Status.LIMIT_REACHED));
+                     break;
+                 }
+                 UserCredentials credentials = parse(line, format);
+                 if (credentials == null || credentials.getUsername() == null || credentials.getPassword() == null ||
+                     credentials.getUsername().trim().isEmpty() || credentials.getPassword().isEmpty()) {
+                     results.write(new Result(lineNumber, credentials != null ? credentials.getUsername() : null, Status.INVALID));
+                     continue;
+                 }
+                 window.acquireUninterruptibly();
+                 long recordLine = lineNumber;
+                 while (true) {
+                     try {
+                         loginService.registerUserAsync(credentials.getUsername(), credentials.getPassword())
+                                 .whenComplete((registered, e) -> {
+                                     Status status = e != null ? Status.ERROR : registered ? Status.CREATED : Status.CONFLICT;
+                                     try {
+                                         results.write(new Result(recordLine, credentials.getUsername().trim(), status));
+                                     } finally {
+                                         window.release();
+                                     }
+                                 });
+                         break;
+                     } catch (RejectedExecutionException e) {
+                         LockSupport.parkNanos(BUSY_BACKOFF_NANOS);
+                     }
+                 }
+             }
+         } finally {
+             window.acquireUninterruptibly(maxInFlight);
+             results.close();
+         }
+     }
+
+     private UserCredentials parse(String line, Format format) {
+         if (format == Format.CSV) {
+             int comma = line.indexOf(',');
+             if (comma < 0) {
+                 return null;
+             }
+             UserCredentials credentials = new UserCredentials();
+             credentials.setUsername(line.substring(0, comma));
+             credentials.setPassword(line.substring(comma + 1));
+             return credentials;
+         }
+         try {
+             return objectMapper.readValue(line, UserCredentials.class);
+         } catch (IOException e) {
+             return null;
+         }
+     }
+
+     /**
+      * Reads lines of at most maxLength chars. A longer line is consumed up to its end without being
+      * kept, and next returns an empty string with tooLong set, so one huge line cannot exhaust the heap.
+      */
+     private static final class LineReader {
+         private final BufferedReader reader;
+         private final int maxLength;
+         private final StringBuilder line = new StringBuilder();
+         boolean tooLong;
+
+         LineReader(BufferedReader reader, int maxLength) {
+             this.reader = reader;
+             this.maxLength = maxLength;
+         }
+
+         String next() throws IOException {
+             line.setLength(0);
+             tooLong = false;
+             int c;
+             while ((c = reader.read()) >= 0 && c != '\n') {
+                 if (tooLong) {
+                     continue;
+                 }
+                 if (line.length() == maxLength) {
+                     tooLong = true;
+                     line.setLength(0);
+                 } else {
+                     line.append((char) c);
+                 }
+             }
+             if (c < 0 && line.isEmpty() && !tooLong) {
+                 return null;
+             }
+             if (!line.isEmpty() && line.charAt(line.length() - 1) == '\r') {
+                 line.setLength(line.length() - 1);
+             }
+             return line.toString();
+         }
+     }
+
+     private final class ResultWriter {
+         private final Writer writer;
+         private final ReentrantLock lock = new ReentrantLock();
+         private int unflushed;
+         private volatile IOException failure;
+
+         ResultWriter(Writer writer) {
+             this.writer = writer;
+         }
+
+         boolean failed() {
+             return failure != null;
+         }
+
+         void write(Result result) {
+             lock.lock();
+             try {
+                 if (failure != null) {
+                     return;
+                 }
+                 writer.write(objectMapper.writeValueAsString(result));
+                 writer.write('\n');
+                 if (++unflushed >= FLUSH_EVERY) {
+                     writer.flush();
+                     unflushed = 0;
+                 }
+             } catch (IOException e) {
+                 // Usually the client went away; stop reading further records.
+                 failure = e;
+             } finally {
+                 lock.unlock();
+             }
+         }
+
+         void close() throws IOException {
+             lock.lock();
+             try {
+                 if (failure != null) {
+                     throw failure;
+                 }
+                 writer.flush();
+             } finally {
+                 lock.unlock();
+             }
+         }
+     }
+ }
@@ -0,0 +1,386 @@
+package com.secureloginimplementation.demo;
+
+ import jakarta.servlet.http.HttpServletRequest;
+ import org.springframework.beans.factory.annotation.Value;
+ import org.springframework.stereotype.Component;
+
+ import java.util.Arrays;
+ import java.util.Collections;
+ import java.util.List;
+
+ /**
+  * Works out which client a request comes from and turns it into the key of its rate-limit bucket.
+  * The socket peer is the client unless it is one of app.rate-limit.trusted-proxies (comma-separated
+  * addresses or CIDR ranges). Then app.rate-limit.forwarded-header, the one header those proxies
+  * append to (X-Forwarded-For by default, or Forwarded), is walked from the nearest hop outwards and
+  * the first address that is not a trusted proxy is the client. Any other forwarding header comes from
+  * the client unchecked and is ignored. Entries further out are never read, so a client cannot choose
+  * its key by sending the header itself. An entry that is not an IP address (e.g. "unknown") ends the
+  * walk, and the last trusted hop is charged instead.
+  * <p>
+  * Addresses are parsed by hand, never through InetAddress, which would resolve a host name sent in
+  * a header. The trusted ranges are compiled into binary tries at startup, one for IPv4 and one for
+  * IPv6, so checking a hop costs at most one step per prefix bit. Keys are binary strings, one char per byte: "4" followed by the
+  * four IPv4 bytes, or "6" followed by the first app.rate-limit.ipv6-prefix-length bits of an IPv6
+  * address, since a single IPv6 host usually controls a whole /64. Neither tag can start the "user:"
+  * prefix of username keys.
+  */
+ @Component
+ public class ClientAddressResolver {
+
+     private static final char IPV4_TAG = '4';
+     private static final char IPV6_TAG = '6';
+     private static final byte[] IPV4_MAPPED_PREFIX = {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, (byte) 0xff, (byte) 0xff};
+
+     private final CidrTrie trustedIpv4 = new CidrTrie();
+     private final CidrTrie trustedIpv6 = new CidrTrie();
+     private final String forwardedHeader;
+     private final boolean rfc7239;
+     private final int ipv6PrefixLength;
+     private final int ipv6PrefixBytes;
+     private final int ipv6LastByteMask;
+     private int ranges;
+
+     public ClientAddressResolver(@Value("${app.rate-limit.trusted-proxies:}") String trustedProxies,
+                                  @Value("${app.rate-limit.ipv6-prefix-length:64}") int ipv6PrefixLength,
+                                  @Value("${app.rate-limit.forwarded-header:X-Forwarded-For}") String forwardedHeader) {
+         if (ipv6PrefixLength < 1 || ipv6PrefixLength > 128) {
+             throw new IllegalArgumentException("app.rate-limit.ipv6-prefix-length must be between 1 and 128.");
+         }
+         this.ipv6PrefixLength = ipv6PrefixLength;
+         this.forwardedHeader = forwardedHeader.trim();
+         // Any other header is read as a comma-separated address list, like X-Forwarded-For.
+         this.rfc7239 = "Forwarded".equalsIgnoreCase(this.forwardedHeader);
+         this.ipv6PrefixBytes = (ipv6PrefixLength + 7) / 8;
+         this.ipv6LastByteMask = 0xff << (ipv6PrefixBytes * 8 - ipv6PrefixLength);
+         for (String range : trustedProxies.split(",")) {
+             if (!range.isBlank()) {
+                 addTrustedProxy(range.trim());
+                 ranges++;
+             }
+         }
+         System.out.println("Rate limit client keys: " + (ranges == 0 ? "socket address only"
+                         : ranges + " trusted proxy range(s), client from " + this.forwardedHeader)
+                 + ", IPv6 aggregated to /" + ipv6PrefixLength);
+     }
+
+     /**
+      * Bucket key of the client that sent the request.
+      */
+     public String clientKey(HttpServletRequest request) {
+         String remoteAddress = request.getRemoteAddr();
+         byte[] address = new byte[16];
+         if (!parse(remoteAddress, 0, remoteAddress.length(), address)) {
+             // Not an IP address (e.g. a Unix socket peer); still a stable key, and it cannot start with "user:".
+             return "@" + remoteAddress;
+         }
+         if (ranges == 0 || !isTrustedProxy(address)) {
+             return key(address);
+         }
+         List<String> headers = Collections.list(request.getHeaders(forwardedHeader));
+         byte[] hop = new byte[16];
+         for (int h = headers.size() - 1; h >= 0; h--) {
+             String header = headers.get(h);
+             int end = header.length();
+             while (end >= 0) {
+                 int start = header.lastIndexOf(',', end - 1) + 1;
+                 boolean parsed = rfc7239 ? parseForwardedFor(header, start, end, hop) : parse(header, start, end, hop);
+                 if (!parsed) {
+                     return key(address);
+                 }
+                 byte[] previous = address;
+                 address = hop;
+                 if (!isTrustedProxy(address)) {
+                     return key(address);
+                 }
+                 hop = previous;
+                 end = start - 1;
+             }
+         }
+         // Every hop was a trusted proxy: the request started inside the trusted network.
+         return key(address);
+     }
+
+     /**
+      * Readable form of a key for logs, e.g. "192.0.2.1" or "2001:db8:1:2::/64".
+      */
+     public String describe(String key) {
+         if (key.isEmpty() || key.charAt(0) == '@') {
+             return key.isEmpty() ? key : key.substring(1);
+         }
+         StringBuilder text = new StringBuilder();
+         if (key.charAt(0) == IPV4_TAG) {
+             for (int i = 1; i < key.length(); i++) {
+                 text.append(i > 1 ? "." : "").append((int) key.charAt(i));
+             }
+             return text.toString();
+         }
+         for (int i = 1; i < key.length(); i += 2) {
+             int group = key.charAt(i) << 8 | (i + 1 < key.length() ? key.charAt(i + 1) : 0);
+             text.append(i > 1 ? ":" : "").append(Integer.toHexString(group));
+         }
+         return text.append(ipv6PrefixLength < 128 ? "::/" + ipv6PrefixLength : "").toString();
+     }
+
+     private boolean isTrustedProxy(byte[] address) {
+         return isIpv4(address) ? trustedIpv4.matches(address, 12, 32) : trustedIpv6.matches(address, 0, 128);
+     }
+
+     private static boolean isIpv4(byte[] address) {
+         return Arrays.equals(address, 0, IPV4_MAPPED_PREFIX.length, IPV4_MAPPED_PREFIX, 0, IPV4_MAPPED_PREFIX.length);
+     }
+
+     private String key(byte[] address) {
+         if (isIpv4(address)) {
+             return new String(new char[]{IPV4_TAG, (char) (address[12] & 0xff), (char) (address[13] & 0xff),
+                     (char) (address[14] & 0xff), (char) (address[15] & 0xff)});
+         }
+         char[] key = new char[1 + ipv6PrefixBytes];
+         key[0] = IPV6_TAG;
+         for (int i = 0; i < ipv6PrefixBytes; i++) {
+             key[1 + i] = (char) (address[i] & 0xff);
+         }
+         key[ipv6PrefixBytes] &= (char) ipv6LastByteMask;
+         return new String(key);
+     }
+
+     private void addTrustedProxy(String range) {
+         int slash = range.indexOf('/');
+         int end = slash < 0 ? range.length() : slash;
+         byte[] address = new byte[16];
+         if (!parse(range, 0, end, address)) {
+             throw new IllegalArgumentException("Invalid trusted proxy address: " + range);
+         }
+         boolean ipv4 = range.indexOf(':') < 0;
+         int maxLength = ipv4 ? 32 : 128;
+         int prefixLength;
+         try {
+             prefixLength = slash < 0 ? maxLength : Integer.parseInt(range.substring(slash + 1));
+         } catch (NumberFormatException e) {
+             throw new IllegalArgumentException("Invalid trusted proxy prefix length: " + range);
+         }
+         if (prefixLength < 0 || prefixLength > maxLength) {
+             throw new IllegalArgumentException("Invalid trusted proxy prefix length: " + range);
+         }
+         if (ipv4) {
+             trustedIpv4.add(address, 12, prefixLength);
+             return;
+         }
+         trustedIpv6.add(address, 0, prefixLength);
+         // IPv4 peers, mapped or not, are only looked up in the IPv4 trie, so the part of an IPv6 range
+         // that covers ::ffff:0:0/96 (e.g. ::ffff:10.0.0.0/104) goes there as well.
+         if (coversIpv4(address, prefixLength)) {
+             trustedIpv4.add(address, 12, Math.max(0, prefixLength - 96));
+         }
+     }
+
+     private static boolean coversIpv4(byte[] address, int prefixLength) {
+         for (int bit = 0; bit < Math.min(prefixLength, 96); bit++) {
+             int mask = 0x80 >>> (bit & 7);
+             if ((address[bit >> 3] & mask) != (IPV4_MAPPED_PREFIX[bit >> 3] & mask)) {
+                 return false;
+             }
+         }
+         return true;
+     }
+
+     /**
+      * Parses the address of the "for" parameter of one Forwarded element, e.g.
+      * for="[2001:db8::17]:4711";proto=https.
+      */
+     private static boolean parseForwardedFor(String header, int start, int end, byte[] address) {
+         int position = start;
+         while (position < end) {
+             int parameterEnd = header.indexOf(';', position);
+             if (parameterEnd < 0 || parameterEnd > end) {
+                 parameterEnd = end;
+             }
+             int name = skipSpaces(header, position, parameterEnd);
+             if (header.regionMatches(true, name, "for=", 0, 4)) {
+                 int from = name + 4;
+                 int to = parameterEnd;
+                 while (to > from && header.charAt(to - 1) == ' ') {
+                     to--;
+                 }
+                 if (to - from >= 2 && header.charAt(from) == '"' && header.charAt(to - 1) == '"') {
+                     from++;
+                     to--;
+                 }
+                 return parse(header, from, to, address);
+             }
+             position = parameterEnd + 1;
+         }
+         return false;
+     }
+
+     /**
+      * Parses an IPv4 or IPv6 address between start and end into 16 bytes, IPv4 as ::ffff:a.b.c.d.
+      * Surrounding spaces, [brackets], a port and an IPv6 zone are ignored.
+      */
+     static boolean parse(String text, int start, int end, byte[] address) {
+         start = skipSpaces(text, start, end);
+         while (end > start && text.charAt(end - 1) == ' ') {
+             end--;
+         }
+         if (start < end && text.charAt(start) == '[') {
+             int close = text.indexOf(']', start);
+             if (close < 0 || close >= end) {
+                 return false;
+             }
+             return parseIpv6(text, start + 1, close, address);
+         }
+         int firstColon = text.indexOf(':', start);
+         if (firstColon < 0 || firstColon >= end) {
+             System.arraycopy(IPV4_MAPPED_PREFIX, 0, address, 0, IPV4_MAPPED_PREFIX.length);
+             return parseIpv4(text, start, end, address, 12);
+         }
+         int secondColon = text.indexOf(':', firstColon + 1);
+         if (secondColon < 0 || secondColon >= end) {
+             // a.b.c.d:port
+             System.arraycopy(IPV4_MAPPED_PREFIX, 0, address, 0, IPV4_MAPPED_PREFIX.length);
+             return parseIpv4(text, start, firstColon, address, 12);
+         }
+         return parseIpv6(text, start, end, address);
+     }
+
+     private static boolean parseIpv4(String text, int start, int end, byte[] address, int offset) {
+         int octet = 0;
+         int digits = 0;
+         int index = offset;
+         for (int i = start; i <= end; i++) {
+             char c = i < end ? text.charAt(i) : '.';
+             if (c >= '0' && c <= '9') {
+                 octet = octet * 10 + (c - '0');
+                 if (++digits > 3 || octet > 255) {
+                     return false;
+                 }
+             } else if (c == '.' && digits > 0 && index < offset + 4) {
+                 address[index++] = (byte) octet;
+                 octet = 0;
+                 digits = 0;
+             } else {
+                 return false;
+             }
+         }
+         return index == offset + 4;
+     }
+
+     private static boolean parseIpv6(String text, int start, int end, byte[] address) {
+         int zone = text.indexOf('%', start);
+         if (zone >= 0 && zone < end) {
+             end = zone;
+         }
+         Arrays.fill(address, (byte) 0);
+         int index = 0;
+         int gap = -1;
+         int i = start;
+         if (end - start >= 2 && text.charAt(i) == ':' && text.charAt(i + 1) == ':') {
+             gap = 0;
+             i += 2;
+         }
+         while (i < end) {
+             int groupStart = i;
+             int group = 0;
+             while (i < end && i - groupStart < 5) {
+                 int digit = Character.digit(text.charAt(i), 16);
+                 if (digit < 0) {
+                     break;
+                 }
+                 group = group << 4 | digit;
+                 i++;
+             }
+             if (i < end && text.charAt(i) == '.') {
+                 // Embedded IPv4 tail, e.g. ::ffff:192.0.2.1.
+                 if (index > 12 || !parseIpv4(text, groupStart, end, address, index)) {
+                     return false;
+                 }
+                 index += 4;
+                 i = end;
+                 break;
+             }
+             if (i == groupStart || i - groupStart > 4 || index > 14) {
+                 return false;
+             }
+             address[index++] = (byte) (group >> 8);
+             address[index++] = (byte) group;
+             if (i == end) {
+                 break;
+             }
+             if (text.charAt(i) != ':') {
+                 return false;
+             }
+             i++;
+             if (i < end && text.charAt(i) == ':') {
+                 if (gap >= 0) {
+                     return false;
+                 }
+                 gap = index;
+                 i++;
+             } else if (i == end) {
+                 return false;
+             }
+         }
+         if (gap >= 0) {
+             if (index == 16) {
+                 return false;
+             }
+             int moved = index - gap;
+             System.arraycopy(address, gap, address, 16 - moved, moved);
+             Arrays.fill(address, gap, 16 - moved, (byte) 0);
+             return true;
+         }
+         return index == 16;
+     }
+
+     private static int skipSpaces(String text, int start, int end) {
+         while (start < end && text.charAt(start) == ' ') {
+             start++;
+         }
+         return start;
+     }
+
+     /**
+      * Binary trie over the address bits starting at a byte offset. Node 0 is the root;
+      * children[2 * node + bit] is the next node, 0 meaning none, and a terminal node ends a trusted range.
+      */
+     private static final class CidrTrie {
+
+         private int[] children = new int[64];
+         private boolean[] terminal = new boolean[32];
+         private int nodes = 1;
+
+         void add(byte[] address, int offset, int prefixLength) {
+             int node = 0;
+             for (int i = 0; i < prefixLength && !terminal[node]; i++) {
+                 int slot = 2 * node + bit(address, offset, i);
+                 if (children[slot] == 0) {
+                     if (nodes == terminal.length) {
+                         children = Arrays.copyOf(children, children.length * 2);
+                         terminal = Arrays.copyOf(terminal, terminal.length * 2);
+                     }
+                     children[slot] = nodes++;
+                 }
+                 node = children[slot];
+             }
+             terminal[node] = true;
+         }
+
+         boolean matches(byte[] address, int offset, int bits) {
+             int node = 0;
+             for (int i = 0; i < bits; i++) {
+                 if (terminal[node]) {
+                     return true;
+                 }
+                 node = children[2 * node + bit(address, offset, i)];
+                 if (node == 0) {
+                     return false;
+                 }
+             }
+             return terminal[node];
+         }
+
+         private static int bit(byte[] address, int offset, int index) {
+             return (address[offset + (index >>> 3)] >>> (7 - (index & 7))) & 1;
+         }
+     }
+ }
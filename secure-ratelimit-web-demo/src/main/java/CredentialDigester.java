@@ -0,0 +1,68 @@
+package com.secureloginimplementation.demo;
+
+ import org.springframework.stereotype.Component;
+
+ import javax.crypto.Mac;
+ import javax.crypto.spec.SecretKeySpec;
+ import java.nio.charset.StandardCharsets;
+ import java.security.GeneralSecurityException;
+ import java.security.SecureRandom;
+
+ /**
+  * Keyed fingerprint of a username and password: the first 128 bits of
+  * HMAC-SHA256(key, len(username) || username || password) under a key generated at startup. Two
+  * attempts with the same credentials get the same digest for the life of the process, but the
+  * digest cannot be reversed or checked offline, so it is safe to keep in memory as a map key.
+  */
+ @Component
+ public class CredentialDigester {
+
+     public record Digest(long high, long low) {
+
+         /**
+          * Compares without an early exit, unlike equals.
+          */
+         boolean matches(Digest other) {
+             return ((high ^ other.high) | (low ^ other.low)) == 0;
+         }
+     }
+
+     private final SecretKeySpec key;
+     private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::newMac);
+
+     public CredentialDigester() {
+         byte[] secret = new byte[32];
+         new SecureRandom().nextBytes(secret);
+         this.key = new SecretKeySpec(secret, "HmacSHA256");
+     }
+
+     public Digest digest(String username, String password) {
+         byte[] user = username.getBytes(StandardCharsets.UTF_8);
+         Mac mac = macs.get();
+         mac.update((byte) (user.length >>> 24));
+         mac.update((byte) (user.length >>> 16));
+         mac.update((byte) (user.length >>> 8));
+         mac.update((byte) user.length);
+         mac.update(user);
+         byte[] out = mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+         return new Digest(longAt(out, 0), longAt(out, 8));
+     }
+
+     private Mac newMac() {
+         try {
+             Mac mac = Mac.getInstance("HmacSHA256");
+             mac.init(key);
+             return mac;
+         } catch (GeneralSecurityException e) {
+             throw new IllegalStateException("HmacSHA256 is not available", e);
+         }
+     }
+
+     private static long longAt(byte[] bytes, int offset) {
+         long value = 0;
+         for (int i = 0; i < Long.BYTES; i++) {
+             value = (value << 8) | (bytes[offset + i] & 0xFFL);
+         }
+         return value;
+     }
+ }
@@ -0,0 +1,34 @@
+package com.secureloginimplementation.demo;
+
+ import java.util.function.Consumer;
+
+ /**
+  * Storage for username to password-hash mappings used by LoginServiceSecure.
+  */
+ public interface CredentialStore {
+
+     /**
+      * Returns the stored hash for the username, or null if the user is unknown.
+      */
+     String get(String username);
+
+     /**
+      * Stores the hash unless the username is already present.
+      *
+      * @return the hash already stored for the username, or null if this call added it
+      */
+     String putIfAbsent(String username, String passwordHash);
+
+     /**
+      * Replaces the stored hash only if it still equals expectedHash.
+      */
+     boolean replace(String username, String expectedHash, String newHash);
+
+     long size();
+
+     /**
+      * Passes the SHA-256 digest of every stored username to the action. The array may be reused
+      * between calls, so the action must not keep it.
+      */
+     void forEachUsernameDigest(Consumer<byte[]> action);
+ }
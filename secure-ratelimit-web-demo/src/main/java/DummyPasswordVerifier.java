@@ -0,0 +1,102 @@
+package com.secureloginimplementation.demo;
+
+ import io.micrometer.core.instrument.Counter;
+ import io.micrometer.core.instrument.MeterRegistry;
+ import io.micrometer.core.instrument.Timer;
+ import org.springframework.beans.factory.annotation.Value;
+ import org.springframework.security.crypto.password.PasswordEncoder;
+ import org.springframework.stereotype.Component;
+
+ import java.util.Arrays;
+ import java.util.UUID;
+ import java.util.concurrent.CompletableFuture;
+ import java.util.concurrent.RejectedExecutionException;
+ import java.util.concurrent.Semaphore;
+ import java.util.concurrent.TimeUnit;
+
+ /**
+  * Answers a login for an unknown username after the time a real BCrypt check would take, so response
+  * timing does not reveal which usernames exist. Up to app.login.dummy-verify.max-concurrent of these
+  * run a real verification against a throwaway hash on the HashingExecutor; the rest complete on a
+  * timer after the measured verification time plus the current queue wait, without holding any thread,
+  * so a flood of unknown usernames cannot take over the hash pool. When the pool is full they are
+  * rejected like a real login would be.
+  */
+ @Component
+ public class DummyPasswordVerifier {
+
+     private static final int WARMUP_RUNS = 2;
+     private static final int MEASURED_RUNS = 5;
+
+     private final PasswordEncoder passwordEncoder;
+     private final HashingExecutor hashingExecutor;
+     private final String dummyHash;
+     private final long verifyNanos;
+     private final Semaphore permits;
+     private final Timer verifyTimer;
+     private final Counter delayed;
+
+     public DummyPasswordVerifier(PasswordEncoder passwordEncoder, HashingExecutor hashingExecutor,
+                                  @Value("${app.login.dummy-verify.max-concurrent:0}") int maxConcurrent,
+                                  MeterRegistry meterRegistry) {
+         this.passwordEncoder = passwordEncoder;
+         this.hashingExecutor = hashingExecutor;
+         this.dummyHash = passwordEncoder.encode(UUID.randomUUID().toString());
+         this.verifyNanos = measureVerifyNanos();
+         int permitCount = maxConcurrent > 0 ? maxConcurrent : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+         this.permits = new Semaphore(permitCount);
+         this.verifyTimer = meterRegistry.timer("auth.hash", "operation", "dummy");
+         this.delayed = meterRegistry.counter("auth.dummy.verify.delayed");
+     }
+
+     /**
+      * Completes once a real check of the password would have. Throws RejectedExecutionException when
+      * the hash pool has no room, as HashingExecutor.submit does.
+      */
+     public CompletableFuture<Void> verifyAsync(String password) {
+         long start = System.nanoTime();
+         int queued = hashingExecutor.queueDepth();
+         if (queued >= hashingExecutor.queueCapacity()) {
+             throw new RejectedExecutionException("Hashing pool is full");
+         }
+         CompletableFuture<Void> done;
+         if (permits.tryAcquire()) {
+             try {
+                 done = hashingExecutor.submit(() -> {
+                     try {
+                         passwordEncoder.matches(password, dummyHash);
+                         return null;
+                     } finally {
+                         permits.release();
+                     }
+                 });
+             } catch (RejectedExecutionException e) {
+                 permits.release();
+                 throw e;
+             }
+         } else {
+             // A real login would first wait for the tasks queued ahead of it, spread over the workers.
+             delayed.increment();
+             long delay = verifyNanos + queued * verifyNanos / hashingExecutor.threads();
+             done = CompletableFuture.runAsync(() -> { }, CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS));
+         }
+         return done.whenComplete((ignored, e) -> verifyTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+     }
+
+     /**
+      * Median of a few verifications after a warm-up, so the delay matches a check with a warm JIT.
+      */
+     private long measureVerifyNanos() {
+         for (int i = 0; i < WARMUP_RUNS; i++) {
+             passwordEncoder.matches("dummy-password", dummyHash);
+         }
+         long[] runs = new long[MEASURED_RUNS];
+         for (int i = 0; i < runs.length; i++) {
+             long start = System.nanoTime();
+             passwordEncoder.matches("dummy-password", dummyHash);
+             runs[i] = System.nanoTime() - start;
+         }
+         Arrays.sort(runs);
+         return runs[runs.length / 2];
+     }
+ }
@@ -0,0 +1,73 @@
+package com.secureloginimplementation.demo;
+
+ import io.micrometer.core.instrument.Counter;
+ import io.micrometer.core.instrument.MeterRegistry;
+ import io.micrometer.core.instrument.Tags;
+ import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+ import jakarta.annotation.PreDestroy;
+ import org.springframework.beans.factory.annotation.Value;
+ import org.springframework.stereotype.Component;
+
+ import java.util.concurrent.ArrayBlockingQueue;
+ import java.util.concurrent.CompletableFuture;
+ import java.util.concurrent.RejectedExecutionException;
+ import java.util.concurrent.ThreadPoolExecutor;
+ import java.util.concurrent.TimeUnit;
+ import java.util.function.Supplier;
+
+ /**
+  * Fixed-size worker pool for BCrypt work. The queue is bounded so a burst of logins is rejected
+  * with a RejectedExecutionException instead of piling up behind the Tomcat connector threads.
+  * Workers stay platform threads even when spring.threads.virtual.enabled is set: BCrypt is CPU bound
+  * and salt generation goes through SecureRandom's synchronized nextBytes, which would pin carriers.
+  * Queue depth and active workers are published as executor.* gauges tagged name=bcrypt, and every
+  * rejected task counts towards bcrypt.pool.rejected.
+  */
+ @Component
+ public class HashingExecutor {
+
+     private final ThreadPoolExecutor executor;
+     private final Counter rejected;
+
+     public HashingExecutor(@Value("${app.hashing.pool-size:0}") int poolSize,
+                            @Value("${app.hashing.queue-capacity:100}") int queueCapacity,
+                            MeterRegistry meterRegistry) {
+         int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+         this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                 new ArrayBlockingQueue<>(queueCapacity),
+                 Thread.ofPlatform().name("bcrypt-", 0).daemon(true).factory(),
+                 new ThreadPoolExecutor.AbortPolicy());
+         new ExecutorServiceMetrics(executor, "bcrypt", Tags.empty()).bindTo(meterRegistry);
+         this.rejected = meterRegistry.counter("bcrypt.pool.rejected");
+         System.out.println("Hashing pool configured: " + threads + " threads, queue capacity " + queueCapacity);
+     }
+
+     public <T> CompletableFuture<T> submit(Supplier<T> task) {
+         try {
+             return CompletableFuture.supplyAsync(task, executor);
+         } catch (RejectedExecutionException e) {
+             rejected.increment();
+             throw e;
+         }
+     }
+
+     public int threads() {
+         return executor.getMaximumPoolSize();
+     }
+
+     public int queueCapacity() {
+         return executor.getQueue().size() + executor.getQueue().remainingCapacity();
+     }
+
+     /**
+      * Tasks waiting for a worker, not counting the ones running.
+      */
+     public int queueDepth() {
+         return executor.getQueue().size();
+     }
+
+     @PreDestroy
+     public void shutdown() {
+         executor.shutdown();
+     }
+ }
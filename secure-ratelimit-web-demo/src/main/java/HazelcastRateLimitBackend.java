@@ -0,0 +1,91 @@
+package com.secureloginimplementation.demo;
+
+ import com.hazelcast.config.Config;
+ import com.hazelcast.config.JoinConfig;
+ import com.hazelcast.config.NetworkConfig;
+ import com.hazelcast.config.TcpIpConfig;
+ import com.hazelcast.core.Hazelcast;
+ import com.hazelcast.core.HazelcastInstance;
+ import com.hazelcast.map.IMap;
+ import io.github.bucket4j.distributed.ExpirationAfterWriteStrategy;
+ import io.github.bucket4j.distributed.proxy.ProxyManager;
+ import io.github.bucket4j.grid.hazelcast.Bucket4jHazelcast;
+ import io.github.bucket4j.grid.hazelcast.HazelcastProxyManager;
+
+ import java.time.Duration;
+
+ /**
+  * Buckets in an IMap of an embedded Hazelcast member, so all replicas that join the same cluster
+  * share one limit per key. Members find each other over TCP/IP using the configured member list
+  * (comma-separated host or host:port entries; a bare host is probed on the first few ports from
+  * 5701); multicast and cloud discovery are off. Each key lives on one partition owner with one
+  * synchronous backup, and an update is an entry processor run on the owner, i.e. one network round
+  * trip unless this member happens to own the key.
+  * <p>
+  * Entries expire once their bucket has refilled, capped at maxTimeToLive, like RefillTimeExpiryPolicy
+  * does for the JCache backend.
+  */
+ public class HazelcastRateLimitBackend implements RateLimitBackend, AutoCloseable {
+
+     static final String MAP_NAME = "rateLimitBuckets";
+     // Bucket4j registers its entry processor serializers under consecutive type ids from this base.
+     private static final int SERIALIZER_TYPE_ID_BASE = 1000;
+
+     private final HazelcastInstance hazelcast;
+     private final ProxyManager<String> proxyManager;
+
+     public HazelcastRateLimitBackend(String clusterName, int port, String members, String bindInterface,
+                                      Duration maxTimeToLive) {
+         Config config = new Config();
+         config.setClusterName(clusterName);
+         config.setProperty("hazelcast.logging.type", "slf4j");
+         config.setProperty("hazelcast.phone.home.enabled", "false");
+         // Spring (or whoever created this backend) shuts the member down through close().
+         config.setProperty("hazelcast.shutdownhook.enabled", "false");
+
+         NetworkConfig network = config.getNetworkConfig();
+         network.setPort(port).setPortAutoIncrement(true);
+         if (!bindInterface.isBlank()) {
+             network.getInterfaces().setEnabled(true).addInterface(bindInterface);
+             config.setProperty("hazelcast.socket.bind.any", "false");
+         }
+         JoinConfig join = network.getJoin();
+         join.getMulticastConfig().setEnabled(false);
+         join.getAutoDetectionConfig().setEnabled(false);
+         TcpIpConfig tcpIp = join.getTcpIpConfig().setEnabled(true);
+         for (String member : members.split(",")) {
+             if (!member.isBlank()) {
+                 tcpIp.addMember(member.trim());
+             }
+         }
+         HazelcastProxyManager.addCustomSerializers(config.getSerializationConfig(), SERIALIZER_TYPE_ID_BASE);
+
+         this.hazelcast = Hazelcast.newHazelcastInstance(config);
+         IMap<String, byte[]> buckets = hazelcast.getMap(MAP_NAME);
+         this.proxyManager = Bucket4jHazelcast.entryProcessorBasedBuilder(buckets)
+                 .expirationAfterWrite(ExpirationAfterWriteStrategy.basedOnTimeForRefillingBucketUpToMax(maxTimeToLive))
+                 .build();
+         System.out.println("Rate limit backend: Hazelcast cluster '" + clusterName + "', member "
+                 + hazelcast.getCluster().getLocalMember().getAddress() + ", " + hazelcast.getCluster().getMembers().size()
+                 + " member(s)");
+     }
+
+     @Override
+     public ProxyManager<String> proxyManager() {
+         return proxyManager;
+     }
+
+     @Override
+     public boolean isRemote() {
+         return true;
+     }
+
+     public HazelcastInstance hazelcast() {
+         return hazelcast;
+     }
+
+     @Override
+     public void close() {
+         hazelcast.shutdown();
+     }
+ }
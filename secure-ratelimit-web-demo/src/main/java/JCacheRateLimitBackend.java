@@ -0,0 +1,59 @@
+package com.secureloginimplementation.demo;
+
+ import io.github.bucket4j.distributed.proxy.ProxyManager;
+ import io.github.bucket4j.grid.jcache.Bucket4jJCache;
+ import org.springframework.cache.CacheManager;
+
+ import javax.cache.Cache;
+ import java.io.IOException;
+ import java.nio.file.Path;
+
+ /**
+  * Buckets in the rateLimitCache of this node's Ehcache (see ehcache.xml). Every replica keeps its own
+  * buckets, so a client spreading requests over N replicas gets N times the configured limit. With a
+  * BucketStateSnapshot the buckets are restored when the process restarts.
+  */
+ public class JCacheRateLimitBackend implements RateLimitBackend, AutoCloseable {
+
+     private final ProxyManager<String> proxyManager;
+     private final BucketStateSnapshot snapshot;
+
+     public JCacheRateLimitBackend(CacheManager cacheManager) {
+         this(cacheManager, null, 0);
+     }
+
+     /**
+      * Restores the buckets from the snapshot file, if there is one, and keeps it up to date every
+      * snapshotIntervalMillis. A null file disables snapshots.
+      */
+     public JCacheRateLimitBackend(CacheManager cacheManager, Path snapshotFile, long snapshotIntervalMillis) {
+         Cache<String, byte[]> jCache = (Cache<String, byte[]>) cacheManager.getCache("rateLimitCache").getNativeCache();
+         this.proxyManager = Bucket4jJCache.entryProcessorBasedBuilder(jCache)
+            .build();
+         this.snapshot = snapshotFile != null ? new BucketStateSnapshot(jCache, snapshotFile, snapshotIntervalMillis) : null;
+     }
+
+     @Override
+     public ProxyManager<String> proxyManager() {
+         return proxyManager;
+     }
+
+     @Override
+     public boolean isRemote() {
+         return false;
+     }
+
+     @Override
+     public void bucketUpdated(String key) {
+         if (snapshot != null) {
+             snapshot.bucketUpdated(key);
+         }
+     }
+
+     @Override
+     public void close() throws IOException {
+         if (snapshot != null) {
+             snapshot.close();
+         }
+     }
+ }
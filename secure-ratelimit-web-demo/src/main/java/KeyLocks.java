@@ -0,0 +1,48 @@
+package com.secureloginimplementation.demo;
+
+ import java.util.concurrent.locks.ReentrantLock;
+ import java.util.function.Supplier;
+
+ /**
+  * Striped ReentrantLocks over bucket keys. Every path that runs a backend command for a key (consume,
+  * refund, local-bucket load and write-back) goes through the stripe of that key, so same-key commands
+  * queue here, where a waiting virtual thread unmounts, instead of on the monitor inside Ehcache's
+  * ConcurrentHashMap.compute, which would pin its carrier. NONE runs every action without locking.
+  */
+ final class KeyLocks {
+
+     static final KeyLocks NONE = new KeyLocks(0);
+
+     private final ReentrantLock[] stripes;
+
+     KeyLocks(int stripes) {
+         if (stripes == 0) {
+             this.stripes = null;
+             return;
+         }
+         this.stripes = new ReentrantLock[stripes];
+         for (int i = 0; i < stripes; i++) {
+             this.stripes[i] = new ReentrantLock();
+         }
+     }
+
+     <T> T call(String key, Supplier<T> action) {
+         if (stripes == null) {
+             return action.get();
+         }
+         ReentrantLock lock = stripes[(key.hashCode() & 0x7fffffff) % stripes.length];
+         lock.lock();
+         try {
+             return action.get();
+         } finally {
+             lock.unlock();
+         }
+     }
+
+     void run(String key, Runnable action) {
+         call(key, () -> {
+             action.run();
+             return null;
+         });
+     }
+ }
@@ -0,0 +1,233 @@
+package com.secureloginimplementation.demo;
+
+ import com.github.benmanes.caffeine.cache.Cache;
+ import com.github.benmanes.caffeine.cache.Caffeine;
+ import com.github.benmanes.caffeine.cache.RemovalCause;
+ import io.github.bucket4j.Bandwidth;
+ import io.github.bucket4j.Bucket;
+ import io.github.bucket4j.BucketConfiguration;
+ import io.github.bucket4j.ConsumptionProbe;
+ import io.micrometer.core.instrument.Timer;
+
+ import java.time.Duration;
+ import java.util.concurrent.Executors;
+ import java.util.concurrent.ScheduledExecutorService;
+ import java.util.concurrent.TimeUnit;
+ import java.util.concurrent.atomic.AtomicLong;
+ import java.util.concurrent.locks.ReentrantLock;
+ import java.util.function.Consumer;
+ import java.util.function.Function;
+
+ /**
+  * In-process token buckets for hot keys. Each key gets a lock-free local bucket seeded from the
+  * backend-held bucket the first time it is seen; tokens consumed locally are written back to the
+  * backend in batches on a fixed interval and whenever the entry is evicted, so the common
+  * path never pays an entry-processor round trip. Every key written back is passed to writtenBack.
+  * After reconfigure, each local bucket switches to the new limit the next time its key is used.
+  * <p>
+  * An evicted entry is retired as its final write-back takes the pending count, so a consume that
+  * reaches it afterwards is not recorded there but redone against a fresh entry, and a refund goes
+  * straight to the backend.
+  */
+ class LocalBucketCache {
+
+     private volatile Bandwidth limit;
+     private final Function<String, Bucket> remoteResolver;
+     private final Consumer<String> writtenBack;
+     private final KeyLocks keyLocks;
+     private final Cache<String, LocalEntry> buckets;
+     private final ScheduledExecutorService flusher;
+     private final Timer loadTimer;
+     private final Timer writeBackTimer;
+
+     LocalBucketCache(Bandwidth limit, Function<String, Bucket> remoteResolver, Consumer<String> writtenBack,
+                      KeyLocks keyLocks, long maxKeys, Duration idleTimeout, Duration flushInterval,
+                      Timer loadTimer, Timer writeBackTimer) {
+         this.limit = limit;
+         this.remoteResolver = remoteResolver;
+         this.writtenBack = writtenBack;
+         this.keyLocks = keyLocks;
+         this.loadTimer = loadTimer;
+         this.writeBackTimer = writeBackTimer;
+         this.buckets = Caffeine.newBuilder()
+                 .maximumSize(maxKeys)
+                 .expireAfterAccess(idleTimeout)
+                 .removalListener((String key, LocalEntry entry, RemovalCause cause) -> {
+                     if (key != null && entry != null && cause != RemovalCause.REPLACED) {
+                         writeBack(key, entry, entry.retire());
+                     }
+                 })
+                 .build();
+         this.flusher = Executors.newSingleThreadScheduledExecutor(
+                 Thread.ofPlatform().name("rate-limit-flush").daemon(true).factory());
+         long intervalMillis = flushInterval.toMillis();
+         flusher.scheduleWithFixedDelay(this::flush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+     }
+
+     ConsumptionProbe tryConsume(String key) {
+         while (true) {
+             LocalEntry entry = buckets.getIfPresent(key);
+             if (entry == null) {
+                 // Loaded outside the cache's compute, which would hold a map monitor across the backend read.
+                 // Two racing loads both read the same remote state, and the loser's copy is simply dropped.
+                 LocalEntry loaded = load(key);
+                 entry = buckets.asMap().putIfAbsent(key, loaded);
+                 if (entry == null) {
+                     entry = loaded;
+                 }
+             }
+             ConsumptionProbe probe = entry.bucket(limit).tryConsumeAndReturnRemaining(1);
+             if (!probe.isConsumed() || entry.record(1)) {
+                 return probe;
+             }
+             // Evicted and written back after the lookup: the token would never reach the backend.
+         }
+     }
+
+     /**
+      * Returns a token taken by tryConsume. The pending count may go negative if a flush ran in
+      * between, in which case the next write-back adds the token to the backend bucket instead. Once
+      * the entry is gone its consumption has already been written back, so the token is returned
+      * to the backend bucket directly.
+      */
+     void refund(String key) {
+         LocalEntry entry = buckets.getIfPresent(key);
+         if (entry != null) {
+             entry.bucket(limit).addTokens(1);
+             if (entry.record(-1)) {
+                 return;
+             }
+         }
+         writeBack(key, null, -1);
+     }
+
+     void reconfigure(Bandwidth limit, Duration idleTimeout) {
+         this.limit = limit;
+         buckets.policy().expireAfterAccess().ifPresent(expiry -> expiry.setExpiresAfter(idleTimeout));
+     }
+
+     void flush() {
+         buckets.asMap().forEach((key, entry) -> writeBack(key, entry, entry.drain()));
+     }
+
+     void close() {
+         flusher.shutdown();
+         flush();
+     }
+
+     private LocalEntry load(String key) {
+         Bandwidth limit = this.limit;
+         Bucket local = Bucket.builder().addLimit(limit).build();
+         long start = System.nanoTime();
+         Bucket remote = remoteResolver.apply(key);
+         long missing = limit.getCapacity() - keyLocks.call(key, remote::getAvailableTokens);
+         loadTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+         if (missing > 0) {
+             local.consumeIgnoringRateLimits(missing);
+         }
+         return new LocalEntry(local, limit);
+     }
+
+     /**
+      * Applies consumed tokens (negative: refunded) to the backend bucket. On failure they go back to
+      * the entry, unless it has been retired, which leaves nowhere to keep them.
+      */
+     private void writeBack(String key, LocalEntry entry, long consumed) {
+         if (consumed == 0) {
+             return;
+         }
+         long start = System.nanoTime();
+         try {
+             Bucket remote = remoteResolver.apply(key);
+             keyLocks.run(key, () -> {
+                 if (consumed > 0) {
+                     remote.consumeIgnoringRateLimits(consumed);
+                 } else {
+                     remote.addTokens(-consumed);
+                 }
+             });
+             writeBackTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+             writtenBack.accept(key);
+         } catch (RuntimeException e) {
+             boolean kept = entry != null && entry.record(consumed);
+             System.err.println("Rate limit write-back failed for key " + key
+                     + (kept ? "" : ", " + consumed + " token(s) lost") + ": " + e.getMessage());
+         }
+     }
+
+     private static final class LocalEntry {
+
+         /**
+          * Value of pending once the entry is retired. Keeping the flag in the counter makes retiring and
+          * recording one atomic step, without a lock on the consume path.
+          */
+         private static final long RETIRED = Long.MIN_VALUE;
+
+         private final Bucket bucket;
+         private final ReentrantLock reconfigureLock = new ReentrantLock();
+         private volatile Bandwidth limit;
+         private final AtomicLong pending = new AtomicLong();
+
+         LocalEntry(Bucket bucket, Bandwidth limit) {
+             this.bucket = bucket;
+             this.limit = limit;
+         }
+
+         /**
+          * The bucket, switched over to the current limit first if it was created under an older one.
+          */
+         Bucket bucket(Bandwidth current) {
+             if (limit != current) {
+                 reconfigureLock.lock();
+                 try {
+                     if (limit != current) {
+                         bucket.replaceConfiguration(BucketConfiguration.builder().addLimit(current).build(),
+                                 RateLimitingService.TOKENS_INHERITANCE);
+                         limit = current;
+                     }
+                 } finally {
+                     reconfigureLock.unlock();
+                 }
+             }
+             return bucket;
+         }
+
+         /**
+          * Adds tokens consumed (negative: refunded) since the last write-back; false once retired.
+          */
+         boolean record(long tokens) {
+             while (true) {
+                 long current = pending.get();
+                 if (current == RETIRED) {
+                     return false;
+                 }
+                 if (pending.compareAndSet(current, current + tokens)) {
+                     return true;
+                 }
+             }
+         }
+
+         /**
+          * Takes the pending count for a write-back and leaves the entry in use.
+          */
+         long drain() {
+             while (true) {
+                 long current = pending.get();
+                 if (current == RETIRED) {
+                     return 0;
+                 }
+                 if (pending.compareAndSet(current, 0)) {
+                     return current;
+                 }
+             }
+         }
+
+         /**
+          * Takes the pending count for the final write-back; nothing is recorded on the entry after this.
+          */
+         long retire() {
+             long last = pending.getAndSet(RETIRED);
+             return last == RETIRED ? 0 : last;
+         }
+     }
+ }
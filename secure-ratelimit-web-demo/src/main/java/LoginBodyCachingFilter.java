@@ -0,0 +1,67 @@
+package com.secureloginimplementation.demo;
+
+ import com.fasterxml.jackson.databind.ObjectMapper;
+ import jakarta.servlet.FilterChain;
+ import jakarta.servlet.ServletException;
+ import jakarta.servlet.http.HttpServletRequest;
+ import jakarta.servlet.http.HttpServletResponse;
+ import org.springframework.http.HttpStatus;
+ import org.springframework.web.filter.OncePerRequestFilter;
+
+ import java.io.IOException;
+
+ /**
+  * Reads and binds a login body once, up front, so the username can be rate-limited before the
+  * controller runs. The bound UserCredentials is stored as a request attribute and the controller
+  * takes it from there instead of binding the body a second time. Bodies larger than
+  * app.login.max-body-bytes are refused, which also keeps a padded body from hiding the username from
+  * the limiter. A body that does not bind leaves both attributes unset; the controller answers 400.
+  */
+ class LoginBodyCachingFilter extends OncePerRequestFilter {
+
+     static final String CREDENTIALS_ATTRIBUTE = LoginBodyCachingFilter.class.getName() + ".credentials";
+     static final String USERNAME_ATTRIBUTE = LoginBodyCachingFilter.class.getName() + ".username";
+
+     private final ObjectMapper objectMapper;
+     private final int maxBodyBytes;
+
+     LoginBodyCachingFilter(ObjectMapper objectMapper, int maxBodyBytes) {
+         this.objectMapper = objectMapper;
+         this.maxBodyBytes = maxBodyBytes;
+     }
+
+     @Override
+     protected boolean shouldNotFilter(HttpServletRequest request) {
+         return !"POST".equals(request.getMethod());
+     }
+
+     @Override
+     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+             throws ServletException, IOException {
+         byte[] body = request.getInputStream().readNBytes(maxBodyBytes + 1);
+         if (body.length > maxBodyBytes) {
+             response.sendError(HttpStatus.PAYLOAD_TOO_LARGE.value(), "Request body too large");
+             return;
+         }
+         UserCredentials credentials = parse(body);
+         if (credentials != null) {
+             request.setAttribute(CREDENTIALS_ATTRIBUTE, credentials);
+             if (credentials.getUsername() != null) {
+                 request.setAttribute(USERNAME_ATTRIBUTE, credentials.getUsername().trim());
+             }
+         }
+         chain.doFilter(request, response);
+     }
+
+     /**
+      * Binds with the application's ObjectMapper, as @RequestBody would. Jackson keeps the last of
+      * duplicate fields, so the username rate-limited is the one the login checks.
+      */
+     private UserCredentials parse(byte[] body) {
+         try {
+             return objectMapper.readValue(body, UserCredentials.class);
+         } catch (IOException e) {
+             return null;
+         }
+     }
+ }
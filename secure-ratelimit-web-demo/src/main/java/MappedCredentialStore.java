@@ -0,0 +1,321 @@
+package com.secureloginimplementation.demo;
+
+ import java.io.IOException;
+ import java.io.UncheckedIOException;
+ import java.lang.invoke.MethodHandles;
+ import java.lang.invoke.VarHandle;
+ import java.nio.ByteBuffer;
+ import java.nio.ByteOrder;
+ import java.nio.MappedByteBuffer;
+ import java.nio.channels.FileChannel;
+ import java.nio.channels.FileLock;
+ import java.nio.charset.StandardCharsets;
+ import java.nio.file.Files;
+ import java.nio.file.Path;
+ import java.nio.file.StandardOpenOption;
+ import java.security.MessageDigest;
+ import java.security.NoSuchAlgorithmException;
+ import java.util.Arrays;
+ import java.util.concurrent.locks.ReentrantLock;
+ import java.util.function.Consumer;
+
+ /**
+  * Append-only credential file of fixed-width records, memory-mapped in segments, with an off-heap
+  * open-addressing index from username to record number.
+  * <p>
+  * Record layout (96 bytes): SHA-256 of the username (32), BCrypt hash (60), flags (1), padding (3).
+  * A password change appends a new record and repoints the index slot, so records are never rewritten
+  * in place. On restart the file is remapped and the index rebuilt with one sequential scan, later
+  * records for the same username winning. Each index slot is a single long holding the top 32 bits of
+  * the username digest and the record number, so lookups are lock-free and a slot is published with
+  * one release store.
+  */
+ public class MappedCredentialStore implements CredentialStore, AutoCloseable {
+
+     private static final long MAGIC = 0x4352454453544f52L;
+     private static final int VERSION = 1;
+     private static final int HEADER_SIZE = 64;
+     private static final int RECORD_SIZE = 96;
+     private static final int DIGEST_SIZE = 32;
+     private static final int HASH_OFFSET = 32;
+     private static final int HASH_SIZE = 60;
+     private static final int FLAGS_OFFSET = 92;
+     private static final byte FLAG_COMMITTED = 1;
+     private static final int RECORDS_PER_SEGMENT = 1 << 16;
+     private static final long SEGMENT_SIZE = (long) RECORDS_PER_SEGMENT * RECORD_SIZE;
+     private static final long MAX_RECORDS = 0xFFFFFFFEL;
+     private static final int MIN_INDEX_SLOTS = 1 << 12;
+
+     private static final VarHandle SLOT = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+     private final FileChannel channel;
+     private final FileLock fileLock;
+     private final ReentrantLock writeLock = new ReentrantLock();
+     private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+     private volatile ByteBuffer index;
+     private volatile long size;
+     private long recordCount;
+
+     public MappedCredentialStore(Path file) {
+         try {
+             if (file.getParent() != null) {
+                 Files.createDirectories(file.getParent());
+             }
+             this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+             this.fileLock = channel.tryLock();
+             if (fileLock == null) {
+                 channel.close();
+                 throw new IllegalStateException("Credential file " + file + " is in use by another process.");
+             }
+             if (channel.size() == 0) {
+                 writeHeader();
+             } else {
+                 verifyHeader(file);
+             }
+             long existingSegments = Math.max(1, (channel.size() - HEADER_SIZE + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+             for (int i = 0; i < existingSegments; i++) {
+                 mapSegment(i);
+             }
+         } catch (IOException e) {
+             throw new UncheckedIOException("Could not open credential file " + file, e);
+         }
+         this.index = ByteBuffer.allocateDirect(MIN_INDEX_SLOTS * Long.BYTES).order(ByteOrder.nativeOrder());
+         recover();
+         System.out.println("Credential store: mapped " + file + " with " + size + " users (" + recordCount + " records).");
+     }
+
+     @Override
+     public String get(String username) {
+         byte[] digest = usernameDigest(username);
+         ByteBuffer idx = index;
+         int slot = findSlot(idx, digest);
+         if (slot < 0) {
+             return null;
+         }
+         return readHash(recordOf((long) SLOT.getAcquire(idx, slot * Long.BYTES)));
+     }
+
+     @Override
+     public String putIfAbsent(String username, String passwordHash) {
+         byte[] hash = encodeHash(passwordHash);
+         byte[] digest = usernameDigest(username);
+         writeLock.lock();
+         try {
+             ByteBuffer idx = index;
+             int slot = findSlot(idx, digest);
+             if (slot >= 0) {
+                 return readHash(recordOf((long) SLOT.getAcquire(idx, slot * Long.BYTES)));
+             }
+             long record = append(digest, hash);
+             SLOT.setRelease(idx, ~slot * Long.BYTES, slotValue(digest, record));
+             size++;
+             if (size * 10 > (idx.capacity() / Long.BYTES) * 7L) {
+                 index = grow(idx);
+             }
+             return null;
+         } finally {
+             writeLock.unlock();
+         }
+     }
+
+     @Override
+     public boolean replace(String username, String expectedHash, String newHash) {
+         byte[] hash = encodeHash(newHash);
+         byte[] digest = usernameDigest(username);
+         writeLock.lock();
+         try {
+             ByteBuffer idx = index;
+             int slot = findSlot(idx, digest);
+             if (slot < 0 || !readHash(recordOf((long) SLOT.getAcquire(idx, slot * Long.BYTES))).equals(expectedHash)) {
+                 return false;
+             }
+             long record = append(digest, hash);
+             SLOT.setRelease(idx, slot * Long.BYTES, slotValue(digest, record));
+             return true;
+         } finally {
+             writeLock.unlock();
+         }
+     }
+
+     @Override
+     public long size() {
+         return size;
+     }
+
+     @Override
+     public void forEachUsernameDigest(Consumer<byte[]> action) {
+         ByteBuffer idx = index;
+         byte[] digest = new byte[DIGEST_SIZE];
+         int slots = idx.capacity() / Long.BYTES;
+         for (int i = 0; i < slots; i++) {
+             long value = (long) SLOT.getAcquire(idx, i * Long.BYTES);
+             if (value != 0) {
+                 long record = recordOf(value);
+                 segments[(int) (record / RECORDS_PER_SEGMENT)].get((int) (record % RECORDS_PER_SEGMENT) * RECORD_SIZE, digest);
+                 action.accept(digest);
+             }
+         }
+     }
+
+     @Override
+     public void close() throws IOException {
+         writeLock.lock();
+         try {
+             for (MappedByteBuffer segment : segments) {
+                 segment.force();
+             }
+             fileLock.release();
+             channel.close();
+         } finally {
+             writeLock.unlock();
+         }
+     }
+
+     static byte[] usernameDigest(String username) {
+         try {
+             return MessageDigest.getInstance("SHA-256").digest(username.getBytes(StandardCharsets.UTF_8));
+         } catch (NoSuchAlgorithmException e) {
+             throw new IllegalStateException("SHA-256 algorithm not found", e);
+         }
+     }
+
+     private void recover() {
+         ByteBuffer idx = index;
+         byte[] digest = new byte[DIGEST_SIZE];
+         long record = 0;
+         while (record / RECORDS_PER_SEGMENT < segments.length) {
+             MappedByteBuffer segment = segments[(int) (record / RECORDS_PER_SEGMENT)];
+             int offset = (int) (record % RECORDS_PER_SEGMENT) * RECORD_SIZE;
+             if (segment.get(offset + FLAGS_OFFSET) != FLAG_COMMITTED) {
+                 break;
+             }
+             segment.get(offset, digest);
+             int slot = findSlot(idx, digest);
+             SLOT.setRelease(idx, (slot >= 0 ? slot : ~slot) * Long.BYTES, slotValue(digest, record));
+             if (slot < 0 && ++size * 10 > (idx.capacity() / Long.BYTES) * 7L) {
+                 idx = grow(idx);
+             }
+             record++;
+         }
+         recordCount = record;
+         index = idx;
+     }
+
+     /**
+      * Returns the slot holding the username, or the bitwise complement of the empty slot where it belongs.
+      */
+     private int findSlot(ByteBuffer idx, byte[] digest) {
+         int mask = idx.capacity() / Long.BYTES - 1;
+         long tag = tagOf(digest);
+         int slot = (int) tag & mask;
+         while (true) {
+             long value = (long) SLOT.getAcquire(idx, slot * Long.BYTES);
+             if (value == 0) {
+                 return ~slot;
+             }
+             if ((value >>> 32) == tag && digestMatches(recordOf(value), digest)) {
+                 return slot;
+             }
+             slot = (slot + 1) & mask;
+         }
+     }
+
+     private ByteBuffer grow(ByteBuffer idx) {
+         int slots = idx.capacity() / Long.BYTES;
+         ByteBuffer grown = ByteBuffer.allocateDirect(slots * 2 * Long.BYTES).order(ByteOrder.nativeOrder());
+         int mask = slots * 2 - 1;
+         for (int i = 0; i < slots; i++) {
+             long value = (long) SLOT.get(idx, i * Long.BYTES);
+             if (value != 0) {
+                 int slot = (int) (value >>> 32) & mask;
+                 while ((long) SLOT.get(grown, slot * Long.BYTES) != 0) {
+                     slot = (slot + 1) & mask;
+                 }
+                 SLOT.set(grown, slot * Long.BYTES, value);
+             }
+         }
+         return grown;
+     }
+
+     private long append(byte[] digest, byte[] hash) {
+         long record = recordCount;
+         if (record >= MAX_RECORDS) {
+             throw new IllegalStateException("Credential file is full.");
+         }
+         int segmentIndex = (int) (record / RECORDS_PER_SEGMENT);
+         if (segmentIndex >= segments.length) {
+             try {
+                 mapSegment(segmentIndex);
+             } catch (IOException e) {
+                 throw new UncheckedIOException("Could not extend credential file", e);
+             }
+         }
+         MappedByteBuffer segment = segments[segmentIndex];
+         int offset = (int) (record % RECORDS_PER_SEGMENT) * RECORD_SIZE;
+         segment.put(offset, digest);
+         segment.put(offset + HASH_OFFSET, hash);
+         segment.put(offset + FLAGS_OFFSET, FLAG_COMMITTED);
+         recordCount = record + 1;
+         return record;
+     }
+
+     private void mapSegment(int segmentIndex) throws IOException {
+         MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE,
+                 HEADER_SIZE + segmentIndex * SEGMENT_SIZE, SEGMENT_SIZE);
+         MappedByteBuffer[] grown = Arrays.copyOf(segments, segmentIndex + 1);
+         grown[segmentIndex] = segment;
+         segments = grown;
+     }
+
+     private String readHash(long record) {
+         byte[] hash = new byte[HASH_SIZE];
+         segments[(int) (record / RECORDS_PER_SEGMENT)].get((int) (record % RECORDS_PER_SEGMENT) * RECORD_SIZE + HASH_OFFSET, hash);
+         return new String(hash, StandardCharsets.ISO_8859_1);
+     }
+
+     private boolean digestMatches(long record, byte[] digest) {
+         MappedByteBuffer segment = segments[(int) (record / RECORDS_PER_SEGMENT)];
+         int offset = (int) (record % RECORDS_PER_SEGMENT) * RECORD_SIZE;
+         for (int i = 0; i < DIGEST_SIZE; i++) {
+             if (segment.get(offset + i) != digest[i]) {
+                 return false;
+             }
+         }
+         return true;
+     }
+
+     private void writeHeader() throws IOException {
+         ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+         header.putLong(MAGIC).putInt(VERSION).putInt(RECORD_SIZE);
+         header.clear();
+         channel.write(header, 0);
+     }
+
+     private void verifyHeader(Path file) throws IOException {
+         ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+         channel.read(header, 0);
+         header.flip();
+         if (header.remaining() < 16 || header.getLong() != MAGIC || header.getInt() != VERSION || header.getInt() != RECORD_SIZE) {
+             throw new IllegalStateException(file + " is not a version " + VERSION + " credential file.");
+         }
+     }
+
+     private static byte[] encodeHash(String passwordHash) {
+         if (passwordHash == null || passwordHash.length() != HASH_SIZE) {
+             throw new IllegalArgumentException("Stored hashes must be " + HASH_SIZE + "-character BCrypt strings.");
+         }
+         return passwordHash.getBytes(StandardCharsets.ISO_8859_1);
+     }
+
+     private static long tagOf(byte[] digest) {
+         return ((digest[0] & 0xFFL) << 24) | ((digest[1] & 0xFFL) << 16) | ((digest[2] & 0xFFL) << 8) | (digest[3] & 0xFFL);
+     }
+
+     private static long slotValue(byte[] digest, long record) {
+         return (tagOf(digest) << 32) | (record + 1);
+     }
+
+     private static long recordOf(long slotValue) {
+         return (slotValue & 0xFFFFFFFFL) - 1;
+     }
+ }
@@ -0,0 +1,24 @@
+package com.secureloginimplementation.demo;
+
+ import io.github.bucket4j.distributed.proxy.ProxyManager;
+
+ /**
+  * Store holding the token buckets of RateLimitingService, selected with app.rate-limit.backend.
+  */
+ public interface RateLimitBackend {
+
+     ProxyManager<String> proxyManager();
+
+     /**
+      * True if every bucket update is a network round trip to another node, which is what
+      * app.rate-limit.backend.optimization is meant to hide.
+      */
+     boolean isRemote();
+
+     /**
+      * Called after RateLimitingService changed the bucket of the key. Backends that only hold state in
+      * this process use it to persist changed buckets; the default does nothing.
+      */
+     default void bucketUpdated(String key) {
+     }
+ }
@@ -1,7 +1,10 @@
 package com.secureloginimplementation.demo;
 
- import io.github.bucket4j.Bucket;
  import io.github.bucket4j.ConsumptionProbe;
+ import io.micrometer.core.instrument.Counter;
+ import io.micrometer.core.instrument.DistributionSummary;
+ import io.micrometer.core.instrument.MeterRegistry;
+ import jakarta.servlet.DispatcherType;
  import jakarta.servlet.http.HttpServletRequest; 
  import jakarta.servlet.http.HttpServletResponse;
  import org.springframework.http.HttpStatus;
@@ -11,32 +14,104 @@ package com.secureloginimplementation.demo;
  @Component
  public class RateLimitInterceptor implements HandlerInterceptor {
 
+     private static final String[] REMAINING_HEADER_VALUES = new String[1024];
+     private static final String ADMITTED_AT_ATTRIBUTE = RateLimitInterceptor.class.getName() + ".admittedAt";
+
+     static {
+         for (int i = 0; i < REMAINING_HEADER_VALUES.length; i++) {
+             REMAINING_HEADER_VALUES[i] = String.valueOf(i);
+         }
+     }
+
      private final RateLimitingService rateLimitingService;
+     private final ClientAddressResolver addressResolver;
+     private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+     private final AuthEventLog eventLog;
+     private final Counter allowed;
+     private final Counter rejected;
+     private final DistributionSummary remainingTokens;
 
-     public RateLimitInterceptor(RateLimitingService rateLimitingService) {
+     public RateLimitInterceptor(RateLimitingService rateLimitingService, ClientAddressResolver addressResolver,
+                                 AdaptiveConcurrencyLimiter concurrencyLimiter, AuthEventLog eventLog,
+                                 MeterRegistry meterRegistry) {
          this.rateLimitingService = rateLimitingService;
+         this.addressResolver = addressResolver;
+         this.concurrencyLimiter = concurrencyLimiter;
+         this.eventLog = eventLog;
+         this.allowed = meterRegistry.counter("ratelimit.requests", "result", "allowed");
+         this.rejected = meterRegistry.counter("ratelimit.requests", "result", "rejected");
+         this.remainingTokens = DistributionSummary.builder("ratelimit.remaining.tokens")
+                 .description("Tokens left in the caller's bucket after an allowed request")
+                 .register(meterRegistry);
      }
 
      @Override
      public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
-         String ipAddress = request.getRemoteAddr();
-         Bucket bucket = rateLimitingService.resolveBucket(ipAddress);
-         ConsumptionProbe probe = bucket.tryConsumeAndReturnRemaining(1);
+         if (request.getDispatcherType() == DispatcherType.ASYNC) {
+             // The token was already consumed on the initial dispatch of an async login.
+             return true;
+         }
+         String clientKey = addressResolver.clientKey(request);
+         boolean adaptive = concurrencyLimiter.isEnabled();
+         if (adaptive && !concurrencyLimiter.tryAcquire()) {
+             // Shed before any bucket is charged: the node is overloaded, not the client over its limit.
+             response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+             response.addHeader("Retry-After", "1");
+             response.getWriter().write("Server is busy, please retry shortly.");
+             eventLog.log(AuthEventLog.Event.LOAD_SHED, addressResolver.describe(clientKey));
+             return false;
+         }
+         String username = (String) request.getAttribute(LoginBodyCachingFilter.USERNAME_ATTRIBUTE);
+         ConsumptionProbe probe;
+         try {
+             probe = rateLimitingService.tryConsume(clientKey, username);
+         } catch (RuntimeException e) {
+             // afterCompletion only releases admitted logins, so a failing backend would leak the slot.
+             if (adaptive) {
+                 concurrencyLimiter.cancel();
+             }
+             throw e;
+         }
 
          if (probe.isConsumed()) {
-             response.addHeader("X-Rate-Limit-Remaining", String.valueOf(probe.getRemainingTokens()));
-             System.out.println("Request allowed for IP: " + ipAddress + ", Remaining tokens: " + probe.getRemainingTokens());
+             if (adaptive) {
+                 request.setAttribute(ADMITTED_AT_ATTRIBUTE, System.nanoTime());
+             }
+             long remaining = probe.getRemainingTokens();
+             allowed.increment();
+             remainingTokens.record(remaining);
+             response.addHeader("X-Rate-Limit-Remaining", remaining < REMAINING_HEADER_VALUES.length
+                     ? REMAINING_HEADER_VALUES[(int) remaining] : String.valueOf(remaining));
+             if (eventLog.isEnabled(AuthEventLog.Event.RATE_LIMIT_ALLOWED)) {
+                 eventLog.log(AuthEventLog.Event.RATE_LIMIT_ALLOWED, addressResolver.describe(clientKey), remaining);
+             }
              return true;
          } else {
-        
+             if (adaptive) {
+                 concurrencyLimiter.cancel();
+             }
+             rejected.increment();
              long waitForRefillNanos = probe.getNanosToWaitForRefill();
              long waitForRefillSeconds = java.util.concurrent.TimeUnit.NANOSECONDS.toSeconds(waitForRefillNanos);
 
              response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value()); 
              response.addHeader("X-Rate-Limit-Retry-After-Seconds", String.valueOf(waitForRefillSeconds));
              response.getWriter().write("Too many requests");
-             System.out.println("Rate limit exceeded for IP: " + ipAddress + ". Wait for " + waitForRefillSeconds + " seconds.");
+             eventLog.log(AuthEventLog.Event.RATE_LIMIT_EXCEEDED, addressResolver.describe(clientKey), waitForRefillSeconds);
              return false; 
          }
      }
+
+     /**
+      * For an async login this runs at the end of the async dispatch, once the response is ready, so
+      * the latency reported to the limiter covers the wait for a BCrypt worker.
+      */
+     @Override
+     public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+         Object admittedAt = request.getAttribute(ADMITTED_AT_ATTRIBUTE);
+         if (admittedAt != null) {
+             request.removeAttribute(ADMITTED_AT_ATTRIBUTE);
+             concurrencyLimiter.release(System.nanoTime() - (Long) admittedAt);
+         }
+     }
  }
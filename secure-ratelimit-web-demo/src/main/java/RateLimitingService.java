@@ -1,48 +1,426 @@
 package com.secureloginimplementation.demo;
 
+ import com.github.benmanes.caffeine.cache.Caffeine;
  import io.github.bucket4j.*;
  import io.github.bucket4j.distributed.proxy.ProxyManager;
- import io.github.bucket4j.grid.jcache.Bucket4jJCache;
- import io.github.bucket4j.grid.jcache.JCacheProxyManager;
+ import io.github.bucket4j.distributed.proxy.RemoteBucketBuilder;
+ import io.github.bucket4j.distributed.proxy.optimization.DelayParameters;
+ import io.github.bucket4j.distributed.proxy.optimization.Optimization;
+ import io.github.bucket4j.distributed.proxy.optimization.Optimizations;
+ import io.micrometer.core.instrument.Counter;
+ import io.micrometer.core.instrument.MeterRegistry;
+ import io.micrometer.core.instrument.Timer;
  import org.springframework.beans.factory.annotation.Value;
- import org.springframework.cache.CacheManager; 
  import org.springframework.stereotype.Service;
- import io.github.bucket4j.distributed.proxy.ClientSideConfig;
+ import jakarta.annotation.PreDestroy;
 
- import javax.cache.Cache; 
  import java.time.Duration;
- import java.util.function.Supplier;
+ import java.util.LinkedHashMap;
+ import java.util.Map;
+ import java.util.concurrent.TimeUnit;
+ import java.util.concurrent.atomic.AtomicLong;
+ import java.util.function.Function;
 
+ /**
+  * Token buckets for /login along up to three dimensions: the client IP, the username being logged
+  * into, and a global bucket for this node. A request must get a token from every enabled dimension;
+  * they are tried cheapest first (global, which is an in-process lock-free bucket, then IP, then
+  * username) and tokens already taken are handed back when a later dimension rejects, so a request
+  * is only charged when it is let through. A username or global capacity of 0 disables that dimension.
+  * <p>
+  * The IP and username buckets live in the RateLimitBackend. With a remote backend,
+  * app.rate-limit.backend.optimization trades accuracy for round trips: "batching" merges concurrent
+  * requests for the same key into one round trip, "delaying" consumes from a local copy of the bucket
+  * and only synchronizes after max-unsynchronized-tokens tokens or max-unsynchronized-ms, so each node
+  * may let that many tokens through beyond the shared limit.
+  * <p>
+  * reconfigure replaces a limit at runtime without touching the stored buckets. Each new configuration
+  * gets a higher version, proxies are built with Bucket4j's implicit configuration replacement for that
+  * version, and the backend swaps the configuration of a bucket inside the next command that reaches it,
+  * keeping its available tokens (capped to the new capacity). Buckets nobody touches are never migrated
+  * and simply expire with their old limit. Versions start at the startup time, so a restarted node's
+  * configuration also wins over buckets restored from a snapshot or shared through Hazelcast; with
+  * several nodes, the new limits have to be sent to each of them.
+  */
  @Service
  public class RateLimitingService {
 
+     private static final String USERNAME_KEY_PREFIX = "user:";
+
+     // Tokens a client has already used stay used; a lower capacity only cuts what is left.
+     static final TokensInheritanceStrategy TOKENS_INHERITANCE = TokensInheritanceStrategy.AS_IS;
+
+     private final RateLimitBackend backend;
      private final ProxyManager<String> proxyManager;
-     private final Bandwidth limit;
+     private final Optimization optimization;
+     private final com.github.benmanes.caffeine.cache.Cache<String, Bucket> proxies;
+     private final KeyLocks keyLocks;
+     private final Timer consumeTimer;
+     private final Dimension ipDimension;
+     private final Dimension usernameDimension;
+     private final Bucket globalBucket;
+     private final Counter globalRejected;
+     private final AtomicLong configurationVersion = new AtomicLong();
+     private volatile LimitSettings globalLimit;
 
-     public RateLimitingService(CacheManager cacheManager, 
+     public RateLimitingService(RateLimitBackend backend,
                                @Value("${app.rate-limit.capacity}") long capacity,
                                @Value("${app.rate-limit.refill-rate}") long refillRate,
                                @Value("${app.rate-limit.refill-period}") long refillPeriod,
-                               @Value("${app.rate-limit.refill-unit}") String refillUnit) {
+                               @Value("${app.rate-limit.refill-unit}") String refillUnit,
+                               @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                               @Value("${app.rate-limit.local.enabled:false}") boolean localEnabled,
+                               @Value("${app.rate-limit.local.max-keys:100000}") long localMaxKeys,
+                               @Value("${app.rate-limit.local.flush-interval-ms:1000}") long localFlushIntervalMs,
+                               @Value("${app.rate-limit.proxy-cache.max-keys:100000}") long proxyCacheMaxKeys,
+                               @Value("${app.rate-limit.backend.optimization:none}") String optimization,
+                               @Value("${app.rate-limit.backend.max-unsynchronized-tokens:10}") long maxUnsynchronizedTokens,
+                               @Value("${app.rate-limit.backend.max-unsynchronized-ms:100}") long maxUnsynchronizedMs,
+                               @Value("${app.rate-limit.username.capacity:0}") long usernameCapacity,
+                               @Value("${app.rate-limit.username.refill-rate:0}") long usernameRefillRate,
+                               @Value("${app.rate-limit.username.refill-period:1}") long usernameRefillPeriod,
+                               @Value("${app.rate-limit.username.refill-unit:MINUTES}") String usernameRefillUnit,
+                               @Value("${app.rate-limit.global.capacity:0}") long globalCapacity,
+                               @Value("${app.rate-limit.global.refill-rate:0}") long globalRefillRate,
+                               @Value("${app.rate-limit.global.refill-period:1}") long globalRefillPeriod,
+                               @Value("${app.rate-limit.global.refill-unit:SECONDS}") String globalRefillUnit,
+                               MeterRegistry meterRegistry) {
+
+         this.backend = backend;
+         this.proxyManager = backend.proxyManager();
+         this.optimization = optimization(optimization, maxUnsynchronizedTokens, maxUnsynchronizedMs);
+         if (this.optimization != null) {
+             System.out.println("Rate limit backend optimization: " + optimization
+                     + (backend.isRemote() ? "" : " (backend is local, so this only adds overhead)"));
+         }
+
+         // Proxies are handles onto the backend entry (plus, when delaying, a few unsynchronized tokens), so
+         // they are only bounded by size: an access-time expiry would add a clock read to every lookup
+         // without freeing anything useful.
+         this.proxies = Caffeine.newBuilder()
+                 .maximumSize(proxyCacheMaxKeys)
+                 .build();
+         this.consumeTimer = backendTimer(meterRegistry, "consume");
+
+         // Ehcache applies entry processors inside ConcurrentHashMap.compute, which blocks on a monitor when
+         // two requests hit the same key. On virtual threads that pins the carrier, so contended keys queue
+         // on a ReentrantLock stripe first, where a waiting virtual thread unmounts instead. A remote backend
+         // runs the processor on another node, and the stripes would only serialize its round trips.
+         this.keyLocks = virtualThreads && !backend.isRemote() ? new KeyLocks(64) : KeyLocks.NONE;
+
+         LocalSettings local = localEnabled
+                 ? new LocalSettings(localMaxKeys, Duration.ofMillis(localFlushIntervalMs), meterRegistry) : null;
+         this.ipDimension = new Dimension("ip", validated("ip", new LimitSettings(capacity, refillRate, refillPeriod, refillUnit)),
+                 local, meterRegistry);
+         System.out.println("Rate Limit Configured: " + capacity + " requests / " + refillPeriod + " " + refillUnit);
+         if (local != null) {
+             System.out.println("Rate limit local fast path enabled: max " + localMaxKeys + " keys, flush every " + localFlushIntervalMs + " ms");
+         }
+
+         if (usernameCapacity > 0) {
+             this.usernameDimension = new Dimension("username", validated("username",
+                     new LimitSettings(usernameCapacity, usernameRefillRate, usernameRefillPeriod, usernameRefillUnit)),
+                     local, meterRegistry);
+             System.out.println("Rate limit per username: " + usernameCapacity + " requests / " + usernameRefillPeriod + " " + usernameRefillUnit);
+         } else {
+             this.usernameDimension = null;
+         }
+
+         if (globalCapacity > 0) {
+             this.globalLimit = validated("global",
+                     new LimitSettings(globalCapacity, globalRefillRate, globalRefillPeriod, globalRefillUnit));
+             this.globalBucket = Bucket.builder()
+                     .addLimit(globalLimit.bandwidth())
+                     .build();
+             System.out.println("Rate limit global: " + globalCapacity + " requests / " + globalRefillPeriod + " " + globalRefillUnit);
+         } else {
+             this.globalBucket = null;
+         }
+         this.globalRejected = meterRegistry.counter("ratelimit.rejected", "dimension", "global");
+     }
+
+     /**
+      * Same as tryConsume(key, null): the global and IP dimensions only.
+      */
+     public ConsumptionProbe tryConsume(String key) {
+         return tryConsume(key, null);
+     }
+
+     /**
+      * Takes one token from every enabled dimension, or none. On rejection the returned probe is the
+      * one from the dimension that rejected, so its wait time is the one the caller has to honour.
+      */
+     public ConsumptionProbe tryConsume(String ipAddress, String username) {
+         if (globalBucket != null) {
+             ConsumptionProbe global = globalBucket.tryConsumeAndReturnRemaining(1);
+             if (!global.isConsumed()) {
+                 globalRejected.increment();
+                 return global;
+             }
+         }
+         ConsumptionProbe probe = ipDimension.tryConsume(ipAddress);
+         if (probe.isConsumed() && usernameDimension != null && username != null) {
+             ConsumptionProbe user = usernameDimension.tryConsume(USERNAME_KEY_PREFIX + username);
+             if (!user.isConsumed()) {
+                 ipDimension.refund(ipAddress);
+                 probe = user;
+             }
+         }
+         if (!probe.isConsumed() && globalBucket != null) {
+             globalBucket.addTokens(1);
+         }
+         return probe;
+     }
+
+     public Bucket resolveBucket(String key) {
+         return ipDimension.resolveBucket(key);
+     }
+
+     /**
+      * Current limit of every enabled dimension, by dimension name.
+      */
+     public Map<String, LimitSettings> limits() {
+         Map<String, LimitSettings> limits = new LinkedHashMap<>();
+         limits.put("ip", ipDimension.limit.settings());
+         if (usernameDimension != null) {
+             limits.put("username", usernameDimension.limit.settings());
+         }
+         if (globalBucket != null) {
+             limits.put("global", globalLimit);
+         }
+         return limits;
+     }
+
+     private static LimitSettings validated(String dimension, LimitSettings settings) {
+         try {
+             settings.validate();
+         } catch (IllegalArgumentException e) {
+             throw new IllegalArgumentException("app.rate-limit " + dimension + " limit: " + e.getMessage(), e);
+         }
+         return settings;
+     }
+
+     /**
+      * Replaces the limit of the "ip", "username" or "global" dimension. A dimension disabled at
+      * startup cannot be enabled this way, since the request path does not check for it.
+      */
+     public synchronized void reconfigure(String dimension, LimitSettings settings) {
+         settings.validate();
+         switch (dimension) {
+             case "ip" -> ipDimension.reconfigure(settings);
+             case "username" -> enabled(usernameDimension, dimension).reconfigure(settings);
+             case "global" -> {
+                 enabled(globalBucket, dimension).replaceConfiguration(
+                         BucketConfiguration.builder().addLimit(settings.bandwidth()).build(), TOKENS_INHERITANCE);
+                 globalLimit = settings;
+             }
+             default -> throw new IllegalArgumentException("Unknown rate limit dimension: " + dimension);
+         }
+         System.out.println("Rate limit " + dimension + " reconfigured: " + settings.capacity() + " requests / "
+                 + settings.refillPeriod() + " " + settings.refillUnit());
+     }
+
+     private static <T> T enabled(T dimension, String name) {
+         if (dimension == null) {
+             throw new IllegalArgumentException("Rate limit dimension " + name + " is disabled.");
+         }
+         return dimension;
+     }
+
+     /**
+      * A version higher than any handed out before; time-based so that it also beats the versions of
+      * earlier runs stored with the buckets.
+      */
+     private long nextConfigurationVersion() {
+         return configurationVersion.updateAndGet(last -> Math.max(last + 1, System.currentTimeMillis()));
+     }
+
+     private ConsumptionProbe consumeRemote(String key, Bucket bucket) {
+         return keyLocks.call(key, () -> consumeRemote(bucket));
+     }
+
+     private ConsumptionProbe consumeRemote(Bucket bucket) {
+         long start = System.nanoTime();
+         try {
+             return bucket.tryConsumeAndReturnRemaining(1);
+         } finally {
+             consumeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+         }
+     }
 
-         Cache<String, byte[]> jCache = (Cache<String, byte[]>) cacheManager.getCache("rateLimitCache").getNativeCache();
-         this.proxyManager = Bucket4jJCache.entryProcessorBasedBuilder(jCache)
-            .build();
+     private static Optimization optimization(String name, long maxUnsynchronizedTokens, long maxUnsynchronizedMs) {
+         return switch (name.toLowerCase()) {
+             case "batching" -> Optimizations.batching();
+             case "delaying" -> Optimizations.delaying(
+                     new DelayParameters(maxUnsynchronizedTokens, Duration.ofMillis(maxUnsynchronizedMs)));
+             default -> null;
+         };
+     }
 
-         Duration duration = switch (refillUnit.toUpperCase()) {
+     private static Duration duration(long refillPeriod, String refillUnit) {
+         return switch (refillUnit.toUpperCase()) {
              case "SECONDS" -> Duration.ofSeconds(refillPeriod);
              case "HOURS" -> Duration.ofHours(refillPeriod);
-             default -> Duration.ofMinutes(refillPeriod); 
+             default -> Duration.ofMinutes(refillPeriod);
          };
+     }
 
-         this.limit = Bandwidth.classic(capacity, Refill.greedy(refillRate, duration));
-         System.out.println("Rate Limit Configured: " + capacity + " requests / " + refillPeriod + " " + refillUnit);
+     /**
+      * Times one round trip to the RateLimitBackend.
+      */
+     static Timer backendTimer(MeterRegistry meterRegistry, String operation) {
+         return Timer.builder("ratelimit.backend")
+                 .description("Round trip to the rate-limit bucket store")
+                 .tag("operation", operation)
+                 .register(meterRegistry);
      }
 
-     public Bucket resolveBucket(String key) {
-         Supplier<BucketConfiguration> configSupplier = () -> BucketConfiguration.builder()
-                 .addLimit(this.limit)
-                 .build();
-         return proxyManager.builder().build(key, configSupplier);
+     @PreDestroy
+     public void shutdown() {
+         ipDimension.close();
+         if (usernameDimension != null) {
+             usernameDimension.close();
+         }
+     }
+
+     private record LocalSettings(long maxKeys, Duration flushInterval, MeterRegistry meterRegistry) {
+     }
+
+     /**
+      * One limit as configured in application.properties: capacity tokens, refilled greedily at
+      * refillRate tokens per refillPeriod refillUnit (SECONDS, MINUTES or HOURS).
+      */
+     public record LimitSettings(long capacity, long refillRate, long refillPeriod, String refillUnit) {
+
+         /**
+          * Rejects settings Bucket4j cannot build or fullRefill would divide by zero on, so a missing
+          * refill-rate fails at startup rather than on the first request.
+          */
+         void validate() {
+             if (capacity <= 0 || refillRate <= 0 || refillPeriod <= 0) {
+                 throw new IllegalArgumentException("Capacity, refill rate and refill period must be positive.");
+             }
+             if (refillUnit == null || !refillUnit.toUpperCase().matches("SECONDS|MINUTES|HOURS")) {
+                 throw new IllegalArgumentException("Refill unit must be SECONDS, MINUTES or HOURS.");
+             }
+         }
+
+         Bandwidth bandwidth() {
+             return Bandwidth.classic(capacity, Refill.greedy(refillRate, duration(refillPeriod, refillUnit)));
+         }
+
+         /**
+          * A bucket left idle this long is indistinguishable from a new one.
+          */
+         Duration fullRefill() {
+             return duration(refillPeriod, refillUnit).multipliedBy((capacity + refillRate - 1) / refillRate);
+         }
+     }
+
+     /**
+      * The limit of a dimension together with the Bucket4j configuration built from it and the version
+      * that configuration is stored under.
+      */
+     private record VersionedLimit(LimitSettings settings, Bandwidth bandwidth, BucketConfiguration configuration,
+                                   long version) {
+     }
+
+     /**
+      * One backend-held limit. All dimensions share the proxy cache and the backend; their keys
+      * never collide because username keys are prefixed with "user:", which no ClientAddressResolver
+      * key starts with.
+      */
+     private final class Dimension {
+
+         private final String name;
+         private final Function<String, Bucket> proxyFactory = this::newProxy;
+         private final LocalBucketCache localBuckets;
+         private final Counter rejected;
+         private volatile VersionedLimit limit;
+
+         Dimension(String name, LimitSettings settings, LocalSettings local, MeterRegistry meterRegistry) {
+             this.name = name;
+             this.limit = versioned(settings);
+             if (local != null) {
+                 // A local entry is kept for as long as a full refill takes before it is written back and dropped.
+                 this.localBuckets = new LocalBucketCache(limit.bandwidth(), this::resolveBucket, backend::bucketUpdated,
+                         keyLocks, local.maxKeys(), settings.fullRefill(), local.flushInterval(),
+                         backendTimer(local.meterRegistry(), "load"), backendTimer(local.meterRegistry(), "write-back"));
+             } else {
+                 this.localBuckets = null;
+             }
+             this.rejected = meterRegistry.counter("ratelimit.rejected", "dimension", name);
+         }
+
+         ConsumptionProbe tryConsume(String key) {
+             if (localBuckets != null) {
+                 ConsumptionProbe probe = localBuckets.tryConsume(key);
+                 if (!probe.isConsumed()) {
+                     rejected.increment();
+                 }
+                 return probe;
+             }
+             ConsumptionProbe probe = consumeRemote(key, resolveBucket(key));
+             if (probe.isConsumed()) {
+                 backend.bucketUpdated(key);
+             } else {
+                 rejected.increment();
+             }
+             return probe;
+         }
+
+         void refund(String key) {
+             if (localBuckets != null) {
+                 localBuckets.refund(key);
+             } else {
+                 Bucket bucket = resolveBucket(key);
+                 keyLocks.run(key, () -> bucket.addTokens(1));
+                 backend.bucketUpdated(key);
+             }
+         }
+
+         Bucket resolveBucket(String key) {
+             return proxies.get(key, proxyFactory);
+         }
+
+         /**
+          * Switches new proxies to the new configuration and drops the cached ones of this dimension, whose
+          * version is fixed; stored buckets are migrated by the next command that reaches them. With the
+          * delaying optimization, the tokens a dropped proxy had not synchronized yet are lost.
+          */
+         void reconfigure(LimitSettings settings) {
+             VersionedLimit reconfigured = versioned(settings);
+             limit = reconfigured;
+             boolean usernameKeys = name.equals("username");
+             proxies.asMap().keySet().removeIf(key -> key.startsWith(USERNAME_KEY_PREFIX) == usernameKeys);
+             if (localBuckets != null) {
+                 localBuckets.reconfigure(reconfigured.bandwidth(), settings.fullRefill());
+             }
+         }
+
+         private VersionedLimit versioned(LimitSettings settings) {
+             Bandwidth bandwidth = settings.bandwidth();
+             BucketConfiguration configuration = BucketConfiguration.builder()
+                     .addLimit(bandwidth)
+                     .build();
+             BucketStateSerializer.register(configuration);
+             return new VersionedLimit(settings, bandwidth, configuration, nextConfigurationVersion());
+         }
+
+         private Bucket newProxy(String key) {
+             VersionedLimit current = limit;
+             RemoteBucketBuilder<String> builder = proxyManager.builder()
+                     .withImplicitConfigurationReplacement(current.version(), TOKENS_INHERITANCE);
+             if (optimization != null) {
+                 builder = builder.withOptimization(optimization);
+             }
+             return builder.build(key, current.configuration());
+         }
+
+         void close() {
+             if (localBuckets != null) {
+                 localBuckets.close();
+             }
+         }
      }
  }
@@ -0,0 +1,43 @@
+package com.secureloginimplementation.demo;
+
+ import io.github.bucket4j.distributed.remote.RemoteBucketState;
+ import io.github.bucket4j.distributed.serialization.InternalSerializationHelper;
+ import org.ehcache.expiry.ExpiryPolicy;
+
+ import java.time.Duration;
+ import java.util.function.Supplier;
+
+ /**
+  * Expires a rateLimitCache entry once its bucket would have refilled completely. From then on a
+  * fresh bucket behaves exactly like the stored one, so keeping it only costs memory: a client seen
+  * once is dropped after one refill period instead of a flat TTL, and a key that is still being
+  * throttled is never dropped early. Reads leave the expiry alone, since they do not change the state.
+  */
+ public class RefillTimeExpiryPolicy implements ExpiryPolicy<String, byte[]> {
+
+     // Keeps full buckets (e.g. after a refund) from being dropped on every write.
+     private static final Duration MIN_EXPIRY = Duration.ofSeconds(1);
+
+     @Override
+     public Duration getExpiryForCreation(String key, byte[] state) {
+         return untilFull(state);
+     }
+
+     @Override
+     public Duration getExpiryForAccess(String key, Supplier<? extends byte[]> state) {
+         return null;
+     }
+
+     @Override
+     public Duration getExpiryForUpdate(String key, Supplier<? extends byte[]> oldState, byte[] newState) {
+         return untilFull(newState);
+     }
+
+     private static Duration untilFull(byte[] state) {
+         RemoteBucketState bucketState = InternalSerializationHelper.deserializeState(state);
+         // Same clock Bucket4j's JCache proxy manager uses for the state: wall time in nanoseconds.
+         long refillNanos = bucketState.calculateFullRefillingTime(System.currentTimeMillis() * 1_000_000L);
+         Duration untilFull = Duration.ofNanos(refillNanos);
+         return untilFull.compareTo(MIN_EXPIRY) < 0 ? MIN_EXPIRY : untilFull;
+     }
+ }
@@ -1,10 +1,19 @@
 package com.secureloginimplementation.demo;
 
+ import io.micrometer.core.instrument.Counter;
+ import io.micrometer.core.instrument.MeterRegistry;
+ import io.micrometer.core.instrument.Timer;
+ import org.springframework.beans.factory.annotation.Value;
+ import org.springframework.boot.LazyInitializationExcludeFilter;
  import org.springframework.boot.SpringApplication;
  import org.springframework.boot.autoconfigure.SpringBootApplication;
  import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+ import org.springframework.cache.CacheManager;
  import org.springframework.cache.annotation.EnableCaching; 
  import org.springframework.context.annotation.Bean;
+ import org.springframework.context.annotation.Lazy;
+ import jakarta.servlet.http.HttpServletRequest;
+ import jakarta.servlet.http.HttpServletResponse;
  import org.springframework.http.HttpStatus;
  import org.springframework.http.ResponseEntity;
  import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder; 
@@ -12,8 +21,15 @@ package com.secureloginimplementation.demo;
  import org.springframework.stereotype.Service;
  import org.springframework.web.bind.annotation.*;
 
+ import java.io.IOException;
+ import java.nio.file.Path;
+ import java.time.Duration;
  import java.util.Map;
+ import java.util.concurrent.CompletableFuture;
+ import java.util.concurrent.CompletionException;
  import java.util.concurrent.ConcurrentHashMap;
+ import java.util.concurrent.RejectedExecutionException;
+ import java.util.concurrent.TimeUnit;
 
  @SpringBootApplication(exclude = {DataSourceAutoConfiguration.class})
  @EnableCaching 
@@ -27,9 +43,62 @@ package com.secureloginimplementation.demo;
          System.out.println("Login endpoint is rate-limited.");
      }
 
+     /**
+      * Only has an effect with spring.main.lazy-initialization=true, as in the startup build profile:
+      * the beans a login goes through (and everything they depend on, such as BCrypt calibration, the
+      * credential store and the rate-limit cache) are still created at startup, so the first login does
+      * not pay for them; actuator endpoints, bulk import and the rest wait until they are used.
+      */
      @Bean
-     public PasswordEncoder passwordEncoder() {
-         return new BCryptPasswordEncoder();
+     public static LazyInitializationExcludeFilter loginPathBeans() {
+         return LazyInitializationExcludeFilter.forBeanTypes(AuthController.class, LoginServiceSecure.class,
+                 RateLimitInterceptor.class, WebMvcConfig.class);
+     }
+
+     @Bean
+     public BCryptCalibration bcryptCalibration(@Value("${app.bcrypt.calibrate:true}") boolean calibrate,
+                                                @Value("${app.bcrypt.strength:10}") int strength,
+                                                @Value("${app.bcrypt.max-strength:16}") int maxStrength,
+                                                @Value("${app.bcrypt.max-latency-ms:250}") long maxLatencyMs,
+                                                @Value("${app.bcrypt.target-logins-per-second-per-core:4}") double targetLoginsPerSecondPerCore) {
+         if (!calibrate) {
+             return BCryptCalibration.fixed(strength);
+         }
+         return BCryptCalibration.calibrate(strength, maxStrength, maxLatencyMs, targetLoginsPerSecondPerCore);
+     }
+
+     @Bean
+     public PasswordEncoder passwordEncoder(BCryptCalibration bcryptCalibration) {
+         return new BCryptPasswordEncoder(bcryptCalibration.strength());
+     }
+
+     @Bean
+     public CredentialStore credentialStore(@Value("${app.credentials.store:memory}") String store,
+                                            @Value("${app.credentials.file:/tmp/login-credentials/credentials.db}") String file) {
+         // The mapped store persists accounts and locks its file for one writer, so it is opt-in: give each
+         // instance on a host its own app.credentials.file.
+         if ("mapped".equalsIgnoreCase(store)) {
+             return new MappedCredentialStore(Path.of(file));
+         }
+         return new InMemoryCredentialStore();
+     }
+
+     @Bean
+     public RateLimitBackend rateLimitBackend(@Value("${app.rate-limit.backend:jcache}") String backend,
+                                              CacheManager cacheManager,
+                                              @Value("${app.rate-limit.hazelcast.cluster-name:rate-limit}") String clusterName,
+                                              @Value("${app.rate-limit.hazelcast.port:5701}") int port,
+                                              @Value("${app.rate-limit.hazelcast.members:}") String members,
+                                              @Value("${app.rate-limit.hazelcast.interface:}") String bindInterface,
+                                              @Value("${app.rate-limit.hazelcast.max-ttl-minutes:60}") long maxTtlMinutes,
+                                              @Value("${app.rate-limit.snapshot.enabled:false}") boolean snapshotEnabled,
+                                              @Value("${app.rate-limit.snapshot.file:/tmp/rate-limit/buckets.snapshot}") String snapshotFile,
+                                              @Value("${app.rate-limit.snapshot.interval-ms:1000}") long snapshotIntervalMs) {
+         if ("hazelcast".equalsIgnoreCase(backend)) {
+             return new HazelcastRateLimitBackend(clusterName, port, members, bindInterface, Duration.ofMinutes(maxTtlMinutes));
+         }
+         // The Hazelcast backend outlives a restart of one member through its backups; the local cache needs a snapshot.
+         return new JCacheRateLimitBackend(cacheManager, snapshotEnabled ? Path.of(snapshotFile) : null, snapshotIntervalMs);
      }
  }
 
@@ -47,112 +116,279 @@ package com.secureloginimplementation.demo;
  class AuthController {
 
      private final LoginServiceSecure loginService;
+     private final BulkRegistrationService bulkRegistrationService;
+     private final AdminAccess adminAccess;
+     private final AuthEventLog eventLog;
+     private final Timer registerCreated;
+     private final Timer registerConflict;
+     private final Timer registerError;
+     private final Timer registerBusy;
+     private final Timer loginSuccess;
+     private final Timer loginFailure;
+     private final Timer loginBusy;
 
-     public AuthController(LoginServiceSecure loginService) {
+     public AuthController(LoginServiceSecure loginService, @Lazy BulkRegistrationService bulkRegistrationService, AdminAccess adminAccess,
+                           AuthEventLog eventLog, MeterRegistry meterRegistry) {
          this.loginService = loginService;
+         this.bulkRegistrationService = bulkRegistrationService;
+         this.adminAccess = adminAccess;
+         this.eventLog = eventLog;
+         this.registerCreated = meterRegistry.timer("auth.register", "outcome", "created");
+         this.registerConflict = meterRegistry.timer("auth.register", "outcome", "conflict");
+         this.registerError = meterRegistry.timer("auth.register", "outcome", "error");
+         this.registerBusy = meterRegistry.timer("auth.register", "outcome", "busy");
+         this.loginSuccess = meterRegistry.timer("auth.login", "outcome", "success");
+         this.loginFailure = meterRegistry.timer("auth.login", "outcome", "failure");
+         this.loginBusy = meterRegistry.timer("auth.login", "outcome", "busy");
      }
 
      @PostMapping("/register")
-     public ResponseEntity<String> register(@RequestBody UserCredentials credentials) {
+     public CompletableFuture<ResponseEntity<String>> register(@RequestBody UserCredentials credentials) {
          if (credentials == null || credentials.getUsername() == null || credentials.getPassword() == null ||
              credentials.getUsername().trim().isEmpty() || credentials.getPassword().isEmpty()) {
-             return ResponseEntity.badRequest().body("Username and password cannot be empty.");
+             return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("Username and password cannot be empty."));
          }
+         long start = System.nanoTime();
          try {
-             boolean registered = loginService.registerUser(credentials.getUsername(), credentials.getPassword());
-             if (registered) {
-                 System.out.println("API: Registered user '" + credentials.getUsername() + "'");
-                 return ResponseEntity.status(HttpStatus.CREATED).body("User '" + credentials.getUsername() + "' registered successfully.");
-             } else {
-                 System.out.println("API: Attempted to register existing user '" + credentials.getUsername() + "'");
-                 return ResponseEntity.status(HttpStatus.CONFLICT).body("Username '" + credentials.getUsername() + "' already exists.");
-             }
-         } catch (Exception e) {
-             System.err.println("API: Error during registration for user '" + credentials.getUsername() + "': " + e.getMessage());
-             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Registration failed due to an internal error.");
+             return loginService.registerUserAsync(credentials.getUsername(), credentials.getPassword())
+                     .handle((registered, e) -> {
+                         if (e != null) {
+                             registerError.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                             eventLog.log(AuthEventLog.Event.REGISTER_ERROR, credentials.getUsername(), 0, e.getClass().getSimpleName());
+                             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Registration failed due to an internal error.");
+                         }
+                         if (registered) {
+                             registerCreated.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                             return ResponseEntity.status(HttpStatus.CREATED).body("User '" + credentials.getUsername() + "' registered successfully.");
+                         } else {
+                             registerConflict.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                             return ResponseEntity.status(HttpStatus.CONFLICT).body("Username '" + credentials.getUsername() + "' already exists.");
+                         }
+                     });
+         } catch (RejectedExecutionException e) {
+             registerBusy.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+             eventLog.log(AuthEventLog.Event.HASH_POOL_SATURATED, credentials.getUsername(), 0, "register");
+             return CompletableFuture.completedFuture(serviceBusy());
          }
      }
 
+     @PostMapping(path = "/register/bulk", consumes = {"application/x-ndjson", "text/csv"})
+     public void registerBulk(HttpServletRequest request, HttpServletResponse response) throws IOException {
+         // Neither authenticated nor rate limited per record, so it is an admin operation.
+         if (!adminAccess.isAllowed(request)) {
+             response.setStatus(HttpStatus.FORBIDDEN.value());
+             response.getWriter().write("Bulk registration requires " + AdminAccess.TOKEN_HEADER + " from localhost.");
+             return;
+         }
+         BulkRegistrationService.Format format = request.getContentType().startsWith("text/csv")
+                 ? BulkRegistrationService.Format.CSV : BulkRegistrationService.Format.NDJSON;
+         eventLog.log(AuthEventLog.Event.BULK_IMPORT_STARTED, null, 0, format.name());
+         response.setContentType("application/x-ndjson");
+         bulkRegistrationService.importUsers(request.getInputStream(), format, response.getOutputStream());
+     }
+
      @PostMapping("/login")
-     public ResponseEntity<String> login(@RequestBody UserCredentials credentials) {
+     public CompletableFuture<ResponseEntity<String>> login(HttpServletRequest request) {
+         // Bound once by LoginBodyCachingFilter, which the rate limiter already needed the username from.
+         UserCredentials credentials = (UserCredentials) request.getAttribute(LoginBodyCachingFilter.CREDENTIALS_ATTRIBUTE);
           if (credentials == null || credentials.getUsername() == null || credentials.getPassword() == null) {
-             return ResponseEntity.badRequest().body("Username and password required.");
+             return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("Username and password required."));
          }
-         System.out.println("API: Attempting login for user: " + credentials.getUsername()); 
-
-         boolean loggedIn = loginService.login(credentials.getUsername(), credentials.getPassword());
-
-         if (loggedIn) {
-             System.out.println("API: Login SUCCESSFUL for user: " + credentials.getUsername());
-             return ResponseEntity.ok("Login successful for user '" + credentials.getUsername() + "'.");
-         } else {
-             System.out.println("API: Login FAILED for user: " + credentials.getUsername());
-             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Login failed: Invalid username or password.");
+         long start = System.nanoTime();
+         try {
+             return loginService.loginAsync(credentials.getUsername(), credentials.getPassword())
+                     .handle((loggedIn, e) -> {
+                         if (e != null) {
+                             // A login coalesced onto an attempt that the hash pool rejected.
+                             if (e.getCause() instanceof RejectedExecutionException) {
+                                 loginBusy.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                                 return serviceBusy();
+                             }
+                             throw e instanceof CompletionException ce ? ce : new CompletionException(e);
+                         }
+                         (loggedIn ? loginSuccess : loginFailure).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                         if (loggedIn) {
+                             return ResponseEntity.ok("Login successful for user '" + credentials.getUsername() + "'.");
+                         } else {
+                             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Login failed: Invalid username or password.");
+                         }
+                     });
+         } catch (RejectedExecutionException e) {
+             loginBusy.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+             eventLog.log(AuthEventLog.Event.HASH_POOL_SATURATED, credentials.getUsername(), 0, "login");
+             return CompletableFuture.completedFuture(serviceBusy());
          }
      }
+
+     private static ResponseEntity<String> serviceBusy() {
+         return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                 .header("Retry-After", "1")
+                 .body("Server is busy, please retry shortly.");
+     }
  }
 
 
  @Service
  class LoginServiceSecure { 
 
-     private final Map<String, String> userCredentials = new ConcurrentHashMap<>();
+     private final CredentialStore userCredentials;
      private final PasswordEncoder passwordEncoder; 
+     private final HashingExecutor hashingExecutor;
+     private final AuthEventLog eventLog;
+     private final UsernameFilter usernameFilter;
+     private final DummyPasswordVerifier dummyPasswordVerifier;
+     private final VerifiedCredentialCache verifiedCredentials;
+     private final CredentialDigester credentialDigester;
+     private final Map<CredentialDigester.Digest, CompletableFuture<Boolean>> inFlightLogins = new ConcurrentHashMap<>();
+     private final Counter coalescedLogins;
+     private final Timer lookupTimer;
+     private final Timer encodeTimer;
+     private final Timer verifyTimer;
 
-     public LoginServiceSecure(PasswordEncoder passwordEncoder) {
+     public LoginServiceSecure(CredentialStore userCredentials, PasswordEncoder passwordEncoder, HashingExecutor hashingExecutor,
+                               AuthEventLog eventLog, UsernameFilter usernameFilter, DummyPasswordVerifier dummyPasswordVerifier,
+                               VerifiedCredentialCache verifiedCredentials, CredentialDigester credentialDigester,
+                               MeterRegistry meterRegistry) {
+         this.userCredentials = userCredentials;
          this.passwordEncoder = passwordEncoder;
+         this.hashingExecutor = hashingExecutor;
+         this.eventLog = eventLog;
+         this.usernameFilter = usernameFilter;
+         this.dummyPasswordVerifier = dummyPasswordVerifier;
+         this.verifiedCredentials = verifiedCredentials;
+         this.credentialDigester = credentialDigester;
+         this.coalescedLogins = meterRegistry.counter("auth.login.coalesced");
+         this.lookupTimer = meterRegistry.timer("auth.credentials.lookup");
+         this.encodeTimer = meterRegistry.timer("auth.hash", "operation", "encode");
+         this.verifyTimer = meterRegistry.timer("auth.hash", "operation", "verify");
      }
 
      private String hashPassword(String password) {
          if (password == null) {
-              System.err.println("Attempted to hash a null password.");
               throw new IllegalArgumentException("Password cannot be null.");
          }
-         return passwordEncoder.encode(password);
+         long start = System.nanoTime();
+         String hash = passwordEncoder.encode(password);
+         encodeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+         return hash;
      }
 
      public boolean registerUser(String username, String password) {
          String trimmedUsername = (username != null) ? username.trim() : null;
          if (trimmedUsername == null || trimmedUsername.isEmpty() || password == null || password.isEmpty()) {
-             System.err.println("Registration failed: Username or password cannot be empty.");
+             eventLog.log(AuthEventLog.Event.REGISTER_REJECTED, trimmedUsername);
              return false;
          }
 
          String hashedPassword = hashPassword(password);
 
+         // Added before the store so a login racing this registration never sees a filter miss.
+         usernameFilter.add(trimmedUsername);
          String previousValue = userCredentials.putIfAbsent(trimmedUsername, hashedPassword);
 
          if (previousValue == null) {
-              System.out.println("Service: Registered user '" + trimmedUsername + "' with BCrypt hash."); 
+              eventLog.log(AuthEventLog.Event.REGISTER_SUCCEEDED, trimmedUsername);
               return true;
          } else {
-              System.out.println("Service: User '" + trimmedUsername + "' already exists.");
+              verifiedCredentials.invalidate(trimmedUsername);
+              eventLog.log(AuthEventLog.Event.REGISTER_CONFLICT, trimmedUsername);
               return false;
          }
      }
 
-     public boolean login(String username, String password) {
-         String trimmedUsername = (username != null) ? username.trim() : null;
-         if (trimmedUsername == null || password == null) {
-              System.out.println("Service: Login attempt with null username or password.");
-              return false;
+     public CompletableFuture<Boolean> registerUserAsync(String username, String password) {
+         return hashingExecutor.submit(() -> registerUser(username, password));
+     }
+
+     public CompletableFuture<Boolean> loginAsync(String username, String password) {
+         if (username == null || password == null) {
+             eventLog.log(AuthEventLog.Event.LOGIN_REJECTED, username != null ? username.trim() : null);
+             return CompletableFuture.completedFuture(false);
+         }
+         String trimmedUsername = username.trim();
+         if (verifiedCredentials.isEnabled()) {
+             // A recent successful login is answered on the calling thread without queueing for BCrypt.
+             String verifiedHash = verifiedCredentials.verifiedHash(trimmedUsername, password);
+             if (verifiedHash != null && verifiedHash.equals(userCredentials.get(trimmedUsername))) {
+                 eventLog.log(AuthEventLog.Event.LOGIN_SUCCEEDED, trimmedUsername, 0, "cached");
+                 return CompletableFuture.completedFuture(true);
+             }
          }
-         String storedHash = userCredentials.get(trimmedUsername);
 
+         // Unknown usernames are settled here, before anything is queued for BCrypt, so they never hold a
+         // hashing thread beyond DummyPasswordVerifier's few real checks.
+         if (!usernameFilter.mightContain(trimmedUsername)) {
+             return unknownUser(trimmedUsername, password, "filter");
+         }
+         long start = System.nanoTime();
+         String storedHash = userCredentials.get(trimmedUsername);
+         lookupTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
          if (storedHash == null) {
-             System.out.println("Service: User '" + trimmedUsername + "' not found during login attempt.");
-             return false;
+             // A filter false positive: still pay the BCrypt cost so timing matches a known user.
+             return unknownUser(trimmedUsername, password, "store");
          }
 
-         System.out.println("Service: Comparing provided password against stored BCrypt hash for user '" + trimmedUsername + "'");
+         // Identical attempts already being verified share that verification instead of running
+         // their own BCrypt check. Callers get a copy so one cancelling cannot affect the others.
+         CredentialDigester.Digest key = credentialDigester.digest(trimmedUsername, password);
+         CompletableFuture<Boolean> flight = new CompletableFuture<>();
+         CompletableFuture<Boolean> leader = inFlightLogins.putIfAbsent(key, flight);
+         if (leader != null) {
+             coalescedLogins.increment();
+             return leader.copy();
+         }
+         try {
+             hashingExecutor.submit(() -> verify(trimmedUsername, password, storedHash)).whenComplete((loggedIn, e) -> {
+                 inFlightLogins.remove(key, flight);
+                 if (e != null) {
+                     flight.completeExceptionally(e);
+                 } else {
+                     flight.complete(loggedIn);
+                 }
+             });
+         } catch (RejectedExecutionException e) {
+             inFlightLogins.remove(key, flight);
+             flight.completeExceptionally(new CompletionException(e));
+             throw e;
+         }
+         return flight.copy();
+     }
 
+     private CompletableFuture<Boolean> unknownUser(String trimmedUsername, String password, String source) {
+         return dummyPasswordVerifier.verifyAsync(password).thenApply(ignored -> {
+             eventLog.log(AuthEventLog.Event.LOGIN_UNKNOWN_USER, trimmedUsername, 0, source);
+             return false;
+         });
+     }
+
+     private boolean verify(String trimmedUsername, String password, String storedHash) {
+         long start = System.nanoTime();
          boolean match = passwordEncoder.matches(password, storedHash);
+         verifyTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
 
          if (match) {
-              System.out.println("Service: Password matches for user '" + trimmedUsername + "'.");
+              eventLog.log(AuthEventLog.Event.LOGIN_SUCCEEDED, trimmedUsername);
+              verifiedCredentials.put(trimmedUsername, password, storedHash);
+              if (passwordEncoder.upgradeEncoding(storedHash)) {
+                  rehashLater(trimmedUsername, storedHash, password);
+              }
          } else {
-              System.out.println("Service: Password does NOT match for user '" + trimmedUsername + "'.");
+              eventLog.log(AuthEventLog.Event.LOGIN_FAILED, trimmedUsername);
          }
          return match;
      }
+
+     private void rehashLater(String username, String storedHash, String password) {
+         try {
+             hashingExecutor.submit(() -> userCredentials.replace(username, storedHash, hashPassword(password)))
+                     .thenAccept(replaced -> {
+                         if (replaced) {
+                             verifiedCredentials.invalidate(username);
+                             eventLog.log(AuthEventLog.Event.PASSWORD_REHASHED, username);
+                         }
+                     });
+         } catch (RejectedExecutionException e) {
+             // The pool is saturated; the hash is upgraded on a later login instead.
+         }
+     }
  }
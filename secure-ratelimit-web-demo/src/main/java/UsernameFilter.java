@@ -0,0 +1,78 @@
+package com.secureloginimplementation.demo;
+
+ import org.springframework.beans.factory.annotation.Value;
+ import org.springframework.stereotype.Component;
+
+ import java.util.concurrent.atomic.AtomicLongArray;
+
+ /**
+  * Bloom filter over the SHA-256 digests of registered usernames, so a login for a name that was
+  * never registered is answered without touching the credential store. The filter is rebuilt from
+  * the store at startup and only ever grows: usernames are never removed, and a false positive just
+  * falls through to the normal store lookup. Bits are set with CAS, so registrations never block
+  * concurrent logins.
+  * <p>
+  * Sized for app.login.username-filter.expected-users at the configured false-positive rate
+  * (rounded up to a power of two, 2 MB for a million users at 1%); registering past that raises the
+  * rate gradually.
+  */
+ @Component
+ public class UsernameFilter {
+
+     private final AtomicLongArray bits;
+     private final long bitMask;
+     private final int hashCount;
+
+     public UsernameFilter(CredentialStore credentialStore,
+                           @Value("${app.login.username-filter.expected-users:1000000}") long expectedUsers,
+                           @Value("${app.login.username-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+         long expected = Math.max(1, Math.max(expectedUsers, credentialStore.size()));
+         double optimalBits = -expected * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+         long bitCount = Math.min(1L << 36, Math.max(Long.SIZE, Long.highestOneBit((long) optimalBits - 1) << 1));
+         this.bits = new AtomicLongArray((int) (bitCount / Long.SIZE));
+         this.bitMask = bitCount - 1;
+         this.hashCount = Math.clamp(Math.round((double) bitCount / expected * Math.log(2)), 1, 16);
+         credentialStore.forEachUsernameDigest(this::add);
+         System.out.println("Username filter: " + (bitCount / 8 / 1024) + " KB, " + hashCount + " hashes, "
+                 + credentialStore.size() + " users loaded");
+     }
+
+     public boolean mightContain(String username) {
+         byte[] digest = MappedCredentialStore.usernameDigest(username);
+         long h1 = longAt(digest, 0);
+         long h2 = longAt(digest, 8) | 1;
+         for (int i = 0; i < hashCount; i++) {
+             long bit = (h1 + i * h2) & bitMask;
+             if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                 return false;
+             }
+         }
+         return true;
+     }
+
+     public void add(String username) {
+         add(MappedCredentialStore.usernameDigest(username));
+     }
+
+     private void add(byte[] digest) {
+         long h1 = longAt(digest, 0);
+         long h2 = longAt(digest, 8) | 1;
+         for (int i = 0; i < hashCount; i++) {
+             long bit = (h1 + i * h2) & bitMask;
+             int word = (int) (bit >>> 6);
+             long mask = 1L << bit;
+             long current = bits.get(word);
+             while ((current & mask) == 0 && !bits.weakCompareAndSetVolatile(word, current, current | mask)) {
+                 current = bits.get(word);
+             }
+         }
+     }
+
+     private static long longAt(byte[] digest, int offset) {
+         long value = 0;
+         for (int i = 0; i < Long.BYTES; i++) {
+             value = (value << 8) | (digest[offset + i] & 0xFFL);
+         }
+         return value;
+     }
+ }
@@ -0,0 +1,76 @@
+package com.secureloginimplementation.demo;
+
+ import com.github.benmanes.caffeine.cache.Cache;
+ import com.github.benmanes.caffeine.cache.Caffeine;
+ import io.micrometer.core.instrument.MeterRegistry;
+ import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+ import org.springframework.beans.factory.annotation.Value;
+ import org.springframework.stereotype.Component;
+
+ import java.time.Duration;
+
+ /**
+  * Short-lived record of successful logins, so a client that re-authenticates within
+  * app.login.verified-cache.ttl-seconds skips BCrypt. Entries hold the CredentialDigester digest of
+  * the username and password, never the password itself, together with the stored hash they were
+  * verified against; a later password change or re-hash therefore misses even if the entry was not
+  * invalidated. Wrong passwords never match an entry and still pay the full BCrypt cost.
+  * <p>
+  * Disabled by default: a hit answers faster than a BCrypt check, which tells an observer the
+  * password was used successfully within the TTL.
+  */
+ @Component
+ public class VerifiedCredentialCache {
+
+     private record Entry(CredentialDigester.Digest digest, String storedHash) {
+     }
+
+     private final boolean enabled;
+     private final Cache<String, Entry> entries;
+     private final CredentialDigester digester;
+
+     public VerifiedCredentialCache(@Value("${app.login.verified-cache.enabled:false}") boolean enabled,
+                                    @Value("${app.login.verified-cache.ttl-seconds:60}") long ttlSeconds,
+                                    @Value("${app.login.verified-cache.max-entries:10000}") long maxEntries,
+                                    CredentialDigester digester, MeterRegistry meterRegistry) {
+         this.enabled = enabled;
+         this.digester = digester;
+         this.entries = Caffeine.newBuilder()
+                 .maximumSize(maxEntries)
+                 .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                 .recordStats()
+                 .build();
+         if (enabled) {
+             CaffeineCacheMetrics.monitor(meterRegistry, entries, "verifiedCredentials");
+             System.out.println("Verified-credential cache enabled: max " + maxEntries + " entries, TTL " + ttlSeconds + " s");
+         }
+     }
+
+     public boolean isEnabled() {
+         return enabled;
+     }
+
+     /**
+      * Returns the stored hash this username and password verified against within the TTL, or null.
+      * The caller must still check it is the hash currently in the store.
+      */
+     public String verifiedHash(String username, String password) {
+         Entry entry = entries.getIfPresent(username);
+         if (entry == null) {
+             return null;
+         }
+         return digester.digest(username, password).matches(entry.digest()) ? entry.storedHash() : null;
+     }
+
+     public void put(String username, String password, String storedHash) {
+         if (enabled) {
+             entries.put(username, new Entry(digester.digest(username, password), storedHash));
+         }
+     }
+
+     public void invalidate(String username) {
+         if (enabled) {
+             entries.invalidate(username);
+         }
+     }
+ }
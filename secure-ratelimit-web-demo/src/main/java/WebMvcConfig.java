@@ -1,5 +1,9 @@
 package com.secureloginimplementation.demo;
 
+ import com.fasterxml.jackson.databind.ObjectMapper;
+ import org.springframework.beans.factory.annotation.Value;
+ import org.springframework.boot.web.servlet.FilterRegistrationBean;
+ import org.springframework.context.annotation.Bean;
  import org.springframework.context.annotation.Configuration;
  import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
  import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
@@ -18,4 +22,13 @@ package com.secureloginimplementation.demo;
          registry.addInterceptor(rateLimitInterceptor)
                  .addPathPatterns("/login");
      }
+
+     @Bean
+     public FilterRegistrationBean<LoginBodyCachingFilter> loginBodyCachingFilter(
+             ObjectMapper objectMapper, @Value("${app.login.max-body-bytes:8192}") int maxBodyBytes) {
+         FilterRegistrationBean<LoginBodyCachingFilter> registration =
+                 new FilterRegistrationBean<>(new LoginBodyCachingFilter(objectMapper, maxBodyBytes));
+         registration.addUrlPatterns("/login");
+         return registration;
+     }
  }
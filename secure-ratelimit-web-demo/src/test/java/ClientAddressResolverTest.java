@@ -0,0 +1,71 @@
+package com.secureloginimplementation.demo;
+
+ import org.junit.jupiter.api.Test;
+ import org.springframework.mock.web.MockHttpServletRequest;
+
+ import static org.junit.jupiter.api.Assertions.assertEquals;
+
+ class ClientAddressResolverTest {
+
+     @Test
+     void untrustedPeerIsTheClient() {
+         ClientAddressResolver resolver = new ClientAddressResolver("10.0.0.0/8", 64, "X-Forwarded-For");
+         MockHttpServletRequest request = request("203.0.113.5");
+         request.addHeader("X-Forwarded-For", "198.51.100.7");
+
+         assertEquals("203.0.113.5", resolver.describe(resolver.clientKey(request)));
+     }
+
+     @Test
+     void walksXForwardedForPastTrustedHops() {
+         ClientAddressResolver resolver = new ClientAddressResolver("10.0.0.0/8", 64, "X-Forwarded-For");
+         MockHttpServletRequest request = request("10.0.0.1");
+         request.addHeader("X-Forwarded-For", "192.0.2.66, 198.51.100.7, 10.0.0.2");
+
+         assertEquals("198.51.100.7", resolver.describe(resolver.clientKey(request)));
+     }
+
+     @Test
+     void ignoresForgedForwardedWhenProxyWritesXForwardedFor() {
+         ClientAddressResolver resolver = new ClientAddressResolver("10.0.0.0/8", 64, "X-Forwarded-For");
+         MockHttpServletRequest request = request("10.0.0.1");
+         request.addHeader("Forwarded", "for=192.0.2.99");
+         request.addHeader("X-Forwarded-For", "198.51.100.7");
+
+         assertEquals("198.51.100.7", resolver.describe(resolver.clientKey(request)));
+     }
+
+     @Test
+     void forgedForwardedAloneChargesTheProxy() {
+         ClientAddressResolver resolver = new ClientAddressResolver("10.0.0.0/8", 64, "X-Forwarded-For");
+         MockHttpServletRequest request = request("10.0.0.1");
+         request.addHeader("Forwarded", "for=192.0.2.99");
+
+         assertEquals("10.0.0.1", resolver.describe(resolver.clientKey(request)));
+     }
+
+     @Test
+     void readsForwardedWhenConfigured() {
+         ClientAddressResolver resolver = new ClientAddressResolver("10.0.0.0/8", 64, "Forwarded");
+         MockHttpServletRequest request = request("10.0.0.1");
+         request.addHeader("X-Forwarded-For", "192.0.2.99");
+         request.addHeader("Forwarded", "for=\"[2001:db8:1:2::17]:4711\";proto=https");
+
+         assertEquals("2001:db8:1:2::/64", resolver.describe(resolver.clientKey(request)));
+     }
+
+     @Test
+     void ipv4MappedTrustedRangeMatchesIpv4Peers() {
+         ClientAddressResolver resolver = new ClientAddressResolver("::ffff:10.0.0.0/104", 64, "X-Forwarded-For");
+         MockHttpServletRequest request = request("10.1.2.3");
+         request.addHeader("X-Forwarded-For", "198.51.100.7, 10.4.5.6");
+
+         assertEquals("198.51.100.7", resolver.describe(resolver.clientKey(request)));
+     }
+
+     private static MockHttpServletRequest request(String remoteAddress) {
+         MockHttpServletRequest request = new MockHttpServletRequest("POST", "/login");
+         request.setRemoteAddr(remoteAddress);
+         return request;
+     }
+ }
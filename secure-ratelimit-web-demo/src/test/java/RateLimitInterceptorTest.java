@@ -0,0 +1,53 @@
+package com.secureloginimplementation.demo;
+
+ import io.github.bucket4j.distributed.proxy.ProxyManager;
+ import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+ import org.junit.jupiter.api.Test;
+ import org.springframework.mock.web.MockHttpServletRequest;
+ import org.springframework.mock.web.MockHttpServletResponse;
+
+ import java.lang.reflect.Proxy;
+
+ import static org.junit.jupiter.api.Assertions.assertThrows;
+ import static org.junit.jupiter.api.Assertions.assertTrue;
+
+ class RateLimitInterceptorTest {
+
+     @Test
+     void backendFailureGivesTheConcurrencySlotBack() {
+         SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+         RateLimitingService rateLimitingService = new RateLimitingService(new FailingBackend(),
+                 5L, 5L, 1, "MINUTES", false, false, 1000L, 1000L, 1000L, "none", 0L, 0L,
+                 0L, 0L, 1, "MINUTES", 0L, 0L, 1, "SECONDS", meterRegistry);
+         HashingExecutor hashingExecutor = new HashingExecutor(1, 1, meterRegistry);
+         // A limit of one, so a leaked slot sheds every later login.
+         AdaptiveConcurrencyLimiter concurrencyLimiter = new AdaptiveConcurrencyLimiter(true, 1, 1, 0L, 2, 0.9,
+                 hashingExecutor, BCryptCalibration.fixed(4), meterRegistry);
+         RateLimitInterceptor interceptor = new RateLimitInterceptor(rateLimitingService,
+                 new ClientAddressResolver("", 64, "X-Forwarded-For"), concurrencyLimiter, new AuthEventLog("ERROR", 1, 16), meterRegistry);
+
+         MockHttpServletRequest request = new MockHttpServletRequest("POST", "/login");
+         request.setRemoteAddr("192.0.2.1");
+         assertThrows(IllegalStateException.class,
+                 () -> interceptor.preHandle(request, new MockHttpServletResponse(), new Object()));
+
+         assertTrue(concurrencyLimiter.tryAcquire());
+     }
+
+     private static final class FailingBackend implements RateLimitBackend {
+
+         @Override
+         @SuppressWarnings("unchecked")
+         public ProxyManager<String> proxyManager() {
+             return (ProxyManager<String>) Proxy.newProxyInstance(ProxyManager.class.getClassLoader(),
+                     new Class<?>[] {ProxyManager.class}, (proxy, method, args) -> {
+                         throw new IllegalStateException("backend unavailable");
+                     });
+         }
+
+         @Override
+         public boolean isRemote() {
+             return true;
+         }
+     }
+ }
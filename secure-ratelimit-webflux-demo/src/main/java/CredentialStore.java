@@ -0,0 +1,26 @@
+package com.secureloginimplementation.demo;
+
+ /**
+  * Storage for username to password-hash mappings used by LoginServiceReactive.
+  */
+ public interface CredentialStore {
+
+     /**
+      * Returns the stored hash for the username, or null if the user is unknown.
+      */
+     String get(String username);
+
+     /**
+      * Stores the hash unless the username is already present.
+      *
+      * @return the hash already stored for the username, or null if this call added it
+      */
+     String putIfAbsent(String username, String passwordHash);
+
+     /**
+      * Replaces the stored hash only if it still equals expectedHash.
+      */
+     boolean replace(String username, String expectedHash, String newHash);
+
+     long size();
+ }
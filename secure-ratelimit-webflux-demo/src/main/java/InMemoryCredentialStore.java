@@ -0,0 +1,29 @@
+package com.secureloginimplementation.demo;
+
+ import java.util.Map;
+ import java.util.concurrent.ConcurrentHashMap;
+
+ public class InMemoryCredentialStore implements CredentialStore {
+
+     private final Map<String, String> userCredentials = new ConcurrentHashMap<>();
+
+     @Override
+     public String get(String username) {
+         return userCredentials.get(username);
+     }
+
+     @Override
+     public String putIfAbsent(String username, String passwordHash) {
+         return userCredentials.putIfAbsent(username, passwordHash);
+     }
+
+     @Override
+     public boolean replace(String username, String expectedHash, String newHash) {
+         return userCredentials.replace(username, expectedHash, newHash);
+     }
+
+     @Override
+     public long size() {
+         return userCredentials.size();
+     }
+ }
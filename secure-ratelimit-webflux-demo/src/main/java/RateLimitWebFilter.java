@@ -0,0 +1,145 @@
+package com.secureloginimplementation.demo;
+
+ import com.fasterxml.jackson.core.JsonFactory;
+ import com.fasterxml.jackson.core.JsonParser;
+ import com.fasterxml.jackson.core.JsonToken;
+ import io.github.bucket4j.ConsumptionProbe;
+ import io.micrometer.core.instrument.Counter;
+ import io.micrometer.core.instrument.DistributionSummary;
+ import io.micrometer.core.instrument.MeterRegistry;
+ import org.springframework.beans.factory.annotation.Value;
+ import org.springframework.core.io.buffer.DataBuffer;
+ import org.springframework.core.io.buffer.DataBufferLimitException;
+ import org.springframework.core.io.buffer.DataBufferUtils;
+ import org.springframework.http.HttpMethod;
+ import org.springframework.http.HttpStatus;
+ import org.springframework.http.server.reactive.ServerHttpRequest;
+ import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+ import org.springframework.http.server.reactive.ServerHttpResponse;
+ import org.springframework.stereotype.Component;
+ import org.springframework.web.server.ServerWebExchange;
+ import org.springframework.web.server.WebFilter;
+ import org.springframework.web.server.WebFilterChain;
+ import reactor.core.publisher.Flux;
+ import reactor.core.publisher.Mono;
+
+ import java.io.IOException;
+ import java.net.InetSocketAddress;
+ import java.nio.charset.StandardCharsets;
+ import java.util.concurrent.TimeUnit;
+
+ /**
+  * WebFlux counterpart of LoginBodyCachingFilter and RateLimitInterceptor for POST /login. The body
+  * is collected (up to app.login.max-body-bytes, otherwise 413) so the username can be rate-limited
+  * before the controller runs, then replayed to the controller from memory. The bucket checks are
+  * async, so a request waiting on them holds no event-loop thread; responses and headers are the
+  * same as the servlet version.
+  */
+ @Component
+ public class RateLimitWebFilter implements WebFilter {
+
+     private static final JsonFactory JSON = new JsonFactory();
+     private static final byte[] TOO_MANY_REQUESTS = "Too many requests".getBytes(StandardCharsets.UTF_8);
+     private static final byte[] TOO_LARGE = "Request body too large".getBytes(StandardCharsets.UTF_8);
+
+     private final ReactiveRateLimitingService rateLimitingService;
+     private final AuthEventLog eventLog;
+     private final int maxBodyBytes;
+     private final Counter allowed;
+     private final Counter rejected;
+     private final DistributionSummary remainingTokens;
+
+     public RateLimitWebFilter(ReactiveRateLimitingService rateLimitingService, AuthEventLog eventLog,
+                               @Value("${app.login.max-body-bytes:8192}") int maxBodyBytes,
+                               MeterRegistry meterRegistry) {
+         this.rateLimitingService = rateLimitingService;
+         this.eventLog = eventLog;
+         this.maxBodyBytes = maxBodyBytes;
+         this.allowed = meterRegistry.counter("ratelimit.requests", "result", "allowed");
+         this.rejected = meterRegistry.counter("ratelimit.requests", "result", "rejected");
+         this.remainingTokens = DistributionSummary.builder("ratelimit.remaining.tokens")
+                 .description("Tokens left in the caller's bucket after an allowed request")
+                 .register(meterRegistry);
+     }
+
+     @Override
+     public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+         ServerHttpRequest request = exchange.getRequest();
+         if (request.getMethod() != HttpMethod.POST || !"/login".equals(request.getPath().pathWithinApplication().value())) {
+             return chain.filter(exchange);
+         }
+         InetSocketAddress remoteAddress = request.getRemoteAddress();
+         String ipAddress = remoteAddress != null ? remoteAddress.getAddress().getHostAddress() : "unknown";
+
+         return DataBufferUtils.join(request.getBody(), maxBodyBytes)
+                 .map(buffer -> {
+                     byte[] body = new byte[buffer.readableByteCount()];
+                     buffer.read(body);
+                     DataBufferUtils.release(buffer);
+                     return body;
+                 })
+                 .defaultIfEmpty(new byte[0])
+                 .flatMap(body -> rateLimitingService.tryConsume(ipAddress, parseUsername(body))
+                         .flatMap(probe -> probe.isConsumed()
+                                 ? admit(exchange, chain, body, ipAddress, probe)
+                                 : reject(exchange.getResponse(), ipAddress, probe)))
+                 .onErrorResume(DataBufferLimitException.class, e -> {
+                     exchange.getResponse().setStatusCode(HttpStatus.PAYLOAD_TOO_LARGE);
+                     return write(exchange.getResponse(), TOO_LARGE);
+                 });
+     }
+
+     private Mono<Void> admit(ServerWebExchange exchange, WebFilterChain chain, byte[] body, String ipAddress,
+                              ConsumptionProbe probe) {
+         long remaining = probe.getRemainingTokens();
+         allowed.increment();
+         remainingTokens.record(remaining);
+         exchange.getResponse().getHeaders().add("X-Rate-Limit-Remaining", String.valueOf(remaining));
+         eventLog.log(AuthEventLog.Event.RATE_LIMIT_ALLOWED, ipAddress, remaining);
+         ServerHttpRequest replayed = new ServerHttpRequestDecorator(exchange.getRequest()) {
+             @Override
+             public Flux<DataBuffer> getBody() {
+                 return Flux.defer(() -> Flux.just(exchange.getResponse().bufferFactory().wrap(body)));
+             }
+         };
+         return chain.filter(exchange.mutate().request(replayed).build());
+     }
+
+     private Mono<Void> reject(ServerHttpResponse response, String ipAddress, ConsumptionProbe probe) {
+         rejected.increment();
+         long waitForRefillSeconds = TimeUnit.NANOSECONDS.toSeconds(probe.getNanosToWaitForRefill());
+         response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+         response.getHeaders().add("X-Rate-Limit-Retry-After-Seconds", String.valueOf(waitForRefillSeconds));
+         eventLog.log(AuthEventLog.Event.RATE_LIMIT_EXCEEDED, ipAddress, waitForRefillSeconds);
+         return write(response, TOO_MANY_REQUESTS);
+     }
+
+     private static Mono<Void> write(ServerHttpResponse response, byte[] message) {
+         return response.writeWith(Mono.fromSupplier(() -> response.bufferFactory().wrap(message)));
+     }
+
+     /**
+      * The trimmed value of the last top-level "username" string field, or null. Jackson binds the
+      * last of duplicate fields, so a decoy username in front of the real one is not the one limited.
+      */
+     static String parseUsername(byte[] body) {
+         String username = null;
+         try (JsonParser parser = JSON.createParser(body)) {
+             if (parser.nextToken() != JsonToken.START_OBJECT) {
+                 return null;
+             }
+             while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                 boolean isUsername = "username".equals(parser.currentName());
+                 JsonToken value = parser.nextToken();
+                 if (isUsername) {
+                     username = value == JsonToken.VALUE_STRING ? parser.getText().trim() : null;
+                 } else {
+                     parser.skipChildren();
+                 }
+             }
+         } catch (IOException e) {
+             return null;
+         }
+         return username;
+     }
+ }
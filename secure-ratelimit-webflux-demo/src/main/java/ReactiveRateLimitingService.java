@@ -0,0 +1,160 @@
+package com.secureloginimplementation.demo;
+
+ import com.github.benmanes.caffeine.cache.Cache;
+ import com.github.benmanes.caffeine.cache.Caffeine;
+ import io.github.bucket4j.Bandwidth;
+ import io.github.bucket4j.Bucket;
+ import io.github.bucket4j.BucketConfiguration;
+ import io.github.bucket4j.ConsumptionProbe;
+ import io.github.bucket4j.Refill;
+ import io.github.bucket4j.caffeine.Bucket4jCaffeine;
+ import io.github.bucket4j.distributed.AsyncBucketProxy;
+ import io.github.bucket4j.distributed.ExpirationAfterWriteStrategy;
+ import io.github.bucket4j.distributed.proxy.AsyncProxyManager;
+ import io.micrometer.core.instrument.Counter;
+ import io.micrometer.core.instrument.MeterRegistry;
+ import org.springframework.beans.factory.annotation.Value;
+ import org.springframework.stereotype.Service;
+ import reactor.core.publisher.Mono;
+
+ import java.time.Duration;
+ import java.util.function.Function;
+
+ /**
+  * The rate-limiting rules of the servlet RateLimitingService (global, then IP, then username, with
+  * tokens handed back when a later dimension rejects) on Bucket4j's async API. Buckets are kept in a
+  * Caffeine-backed proxy manager whose entries expire once their bucket has refilled; every call
+  * returns a Mono, so the filter never blocks an event-loop thread even if the proxy manager is later
+  * swapped for a remote one.
+  */
+ @Service
+ public class ReactiveRateLimitingService {
+
+     private static final String USERNAME_KEY_PREFIX = "user:";
+
+     private final AsyncProxyManager<String> proxyManager;
+     private final Cache<String, AsyncBucketProxy> proxies;
+     private final Dimension ipDimension;
+     private final Dimension usernameDimension;
+     private final Bucket globalBucket;
+     private final Counter globalRejected;
+
+     public ReactiveRateLimitingService(@Value("${app.rate-limit.capacity}") long capacity,
+                                        @Value("${app.rate-limit.refill-rate}") long refillRate,
+                                        @Value("${app.rate-limit.refill-period}") long refillPeriod,
+                                        @Value("${app.rate-limit.refill-unit}") String refillUnit,
+                                        @Value("${app.rate-limit.max-keys:1000000}") long maxKeys,
+                                        @Value("${app.rate-limit.proxy-cache.max-keys:100000}") long proxyCacheMaxKeys,
+                                        @Value("${app.rate-limit.username.capacity:0}") long usernameCapacity,
+                                        @Value("${app.rate-limit.username.refill-rate:0}") long usernameRefillRate,
+                                        @Value("${app.rate-limit.username.refill-period:1}") long usernameRefillPeriod,
+                                        @Value("${app.rate-limit.username.refill-unit:MINUTES}") String usernameRefillUnit,
+                                        @Value("${app.rate-limit.global.capacity:0}") long globalCapacity,
+                                        @Value("${app.rate-limit.global.refill-rate:0}") long globalRefillRate,
+                                        @Value("${app.rate-limit.global.refill-period:1}") long globalRefillPeriod,
+                                        @Value("${app.rate-limit.global.refill-unit:SECONDS}") String globalRefillUnit,
+                                        MeterRegistry meterRegistry) {
+         this.proxyManager = Bucket4jCaffeine.<String>builderFor(Caffeine.newBuilder().maximumSize(maxKeys))
+                 .expirationAfterWrite(ExpirationAfterWriteStrategy.basedOnTimeForRefillingBucketUpToMax(Duration.ofHours(1)))
+                 .build()
+                 .asAsync();
+         this.proxies = Caffeine.newBuilder()
+                 .maximumSize(proxyCacheMaxKeys)
+                 .build();
+
+         this.ipDimension = new Dimension("ip", capacity, refillRate, duration(refillPeriod, refillUnit), meterRegistry);
+         System.out.println("Rate Limit Configured: " + capacity + " requests / " + refillPeriod + " " + refillUnit);
+
+         if (usernameCapacity > 0) {
+             this.usernameDimension = new Dimension("username", usernameCapacity, usernameRefillRate,
+                     duration(usernameRefillPeriod, usernameRefillUnit), meterRegistry);
+             System.out.println("Rate limit per username: " + usernameCapacity + " requests / " + usernameRefillPeriod + " " + usernameRefillUnit);
+         } else {
+             this.usernameDimension = null;
+         }
+
+         if (globalCapacity > 0) {
+             this.globalBucket = Bucket.builder()
+                     .addLimit(Bandwidth.classic(globalCapacity,
+                             Refill.greedy(globalRefillRate, duration(globalRefillPeriod, globalRefillUnit))))
+                     .build();
+             System.out.println("Rate limit global: " + globalCapacity + " requests / " + globalRefillPeriod + " " + globalRefillUnit);
+         } else {
+             this.globalBucket = null;
+         }
+         this.globalRejected = meterRegistry.counter("ratelimit.rejected", "dimension", "global");
+     }
+
+     /**
+      * Takes one token from every enabled dimension, or none. On rejection the probe is the one from
+      * the dimension that rejected, so its wait time is the one the caller has to honour.
+      */
+     public Mono<ConsumptionProbe> tryConsume(String ipAddress, String username) {
+         if (globalBucket != null) {
+             // In-process and lock-free, so it is checked inline before anything is subscribed.
+             ConsumptionProbe global = globalBucket.tryConsumeAndReturnRemaining(1);
+             if (!global.isConsumed()) {
+                 globalRejected.increment();
+                 return Mono.just(global);
+             }
+         }
+         Mono<ConsumptionProbe> probe = ipDimension.tryConsume(ipAddress);
+         if (usernameDimension != null && username != null) {
+             probe = probe.flatMap(ip -> !ip.isConsumed() ? Mono.just(ip)
+                     : usernameDimension.tryConsume(USERNAME_KEY_PREFIX + username).flatMap(user -> user.isConsumed()
+                             ? Mono.just(ip)
+                             : ipDimension.refund(ipAddress).thenReturn(user)));
+         }
+         if (globalBucket == null) {
+             return probe;
+         }
+         return probe.doOnNext(result -> {
+             if (!result.isConsumed()) {
+                 globalBucket.addTokens(1);
+             }
+         });
+     }
+
+     private static Duration duration(long refillPeriod, String refillUnit) {
+         return switch (refillUnit.toUpperCase()) {
+             case "SECONDS" -> Duration.ofSeconds(refillPeriod);
+             case "HOURS" -> Duration.ofHours(refillPeriod);
+             default -> Duration.ofMinutes(refillPeriod);
+         };
+     }
+
+     /**
+      * One limit in the shared proxy manager; username keys are prefixed with "user:", which no IP
+      * address starts with.
+      */
+     private final class Dimension {
+
+         private final BucketConfiguration configuration;
+         private final Function<String, AsyncBucketProxy> proxyFactory = this::newProxy;
+         private final Counter rejected;
+
+         Dimension(String name, long capacity, long refillRate, Duration refillPeriod, MeterRegistry meterRegistry) {
+             this.configuration = BucketConfiguration.builder()
+                     .addLimit(Bandwidth.classic(capacity, Refill.greedy(refillRate, refillPeriod)))
+                     .build();
+             this.rejected = meterRegistry.counter("ratelimit.rejected", "dimension", name);
+         }
+
+         Mono<ConsumptionProbe> tryConsume(String key) {
+             return Mono.fromFuture(() -> proxies.get(key, proxyFactory).tryConsumeAndReturnRemaining(1))
+                     .doOnNext(probe -> {
+                         if (!probe.isConsumed()) {
+                             rejected.increment();
+                         }
+                     });
+         }
+
+         Mono<Void> refund(String key) {
+             return Mono.fromFuture(() -> proxies.get(key, proxyFactory).addTokens(1));
+         }
+
+         private AsyncBucketProxy newProxy(String key) {
+             return proxyManager.builder().build(key, configuration);
+         }
+     }
+ }
@@ -0,0 +1,263 @@
+package com.secureloginimplementation.demo;
+
+ import io.micrometer.core.instrument.MeterRegistry;
+ import io.micrometer.core.instrument.Timer;
+ import org.springframework.beans.factory.annotation.Value;
+ import org.springframework.boot.LazyInitializationExcludeFilter;
+ import org.springframework.boot.SpringApplication;
+ import org.springframework.boot.autoconfigure.SpringBootApplication;
+ import org.springframework.context.annotation.Bean;
+ import org.springframework.http.HttpStatus;
+ import org.springframework.http.ResponseEntity;
+ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+ import org.springframework.security.crypto.password.PasswordEncoder;
+ import org.springframework.stereotype.Service;
+ import org.springframework.web.bind.annotation.*;
+ import reactor.core.publisher.Mono;
+ import reactor.core.scheduler.Scheduler;
+ import reactor.core.scheduler.Schedulers;
+
+ import java.util.UUID;
+ import java.util.concurrent.RejectedExecutionException;
+ import java.util.concurrent.TimeUnit;
+
+ /**
+  * Reactive (Netty) variant of the secure-ratelimit-web-demo login service, with the same /register
+  * and /login contract and rate-limiting rules. Request handling never blocks an event-loop thread:
+  * rate-limit checks go through Bucket4j's async API, and BCrypt runs on a bounded elastic scheduler
+  * whose queue is capped, so a flood of logins is answered with 503 instead of piling up.
+  */
+ @SpringBootApplication
+ public class SecureLoginReactiveApplication {
+
+     public static void main(String[] args) {
+         SpringApplication.run(SecureLoginReactiveApplication.class, args);
+         System.out.println("--- Secure Password Reactive Web Demo with Rate Limiting and BCrypt Running ---");
+         System.out.println("Register: POST /register {\"username\":\"user\",\"password\":\"pass\"}");
+         System.out.println("Login:    POST /login {\"username\":\"user\",\"password\":\"pass\"}");
+         System.out.println("Login endpoint is rate-limited.");
+     }
+
+     /**
+      * Only has an effect with spring.main.lazy-initialization=true, as in the startup build profile:
+      * the login path, including BCrypt calibration and the rate-limit buckets, is still created at
+      * startup so the first login does not wait for it; everything else is created on first use.
+      */
+     @Bean
+     public static LazyInitializationExcludeFilter loginPathBeans() {
+         return LazyInitializationExcludeFilter.forBeanTypes(AuthController.class, LoginServiceReactive.class,
+                 RateLimitWebFilter.class);
+     }
+
+     @Bean
+     public BCryptCalibration bcryptCalibration(@Value("${app.bcrypt.calibrate:true}") boolean calibrate,
+                                                @Value("${app.bcrypt.strength:10}") int strength,
+                                                @Value("${app.bcrypt.max-strength:16}") int maxStrength,
+                                                @Value("${app.bcrypt.max-latency-ms:250}") long maxLatencyMs,
+                                                @Value("${app.bcrypt.target-logins-per-second-per-core:4}") double targetLoginsPerSecondPerCore) {
+         if (!calibrate) {
+             return BCryptCalibration.fixed(strength);
+         }
+         return BCryptCalibration.calibrate(strength, maxStrength, maxLatencyMs, targetLoginsPerSecondPerCore);
+     }
+
+     @Bean
+     public PasswordEncoder passwordEncoder(BCryptCalibration bcryptCalibration) {
+         return new BCryptPasswordEncoder(bcryptCalibration.strength());
+     }
+
+     @Bean
+     public CredentialStore credentialStore() {
+         return new InMemoryCredentialStore();
+     }
+
+     /**
+      * BCrypt is CPU-bound, so the scheduler gets one thread per core by default. Reactor caps the
+      * queue per thread; app.hashing.queue-capacity is spread over the threads so the total matches
+      * the servlet HashingExecutor.
+      */
+     @Bean(destroyMethod = "dispose")
+     public Scheduler hashingScheduler(@Value("${app.hashing.pool-size:0}") int poolSize,
+                                       @Value("${app.hashing.queue-capacity:100}") int queueCapacity) {
+         int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+         int queuedPerThread = Math.max(1, (queueCapacity + threads - 1) / threads);
+         System.out.println("BCrypt scheduler: " + threads + " threads, queue " + queuedPerThread + " per thread");
+         return Schedulers.newBoundedElastic(threads, queuedPerThread, "bcrypt");
+     }
+ }
+
+ class UserCredentials {
+     private String username;
+     private String password;
+
+     public String getUsername() { return username; }
+     public void setUsername(String username) { this.username = username; }
+     public String getPassword() { return password; }
+     public void setPassword(String password) { this.password = password; }
+ }
+
+ @RestController
+ class AuthController {
+
+     private final LoginServiceReactive loginService;
+     private final AuthEventLog eventLog;
+     private final Timer registerCreated;
+     private final Timer registerConflict;
+     private final Timer registerError;
+     private final Timer registerBusy;
+     private final Timer loginSuccess;
+     private final Timer loginFailure;
+     private final Timer loginBusy;
+
+     public AuthController(LoginServiceReactive loginService, AuthEventLog eventLog, MeterRegistry meterRegistry) {
+         this.loginService = loginService;
+         this.eventLog = eventLog;
+         this.registerCreated = meterRegistry.timer("auth.register", "outcome", "created");
+         this.registerConflict = meterRegistry.timer("auth.register", "outcome", "conflict");
+         this.registerError = meterRegistry.timer("auth.register", "outcome", "error");
+         this.registerBusy = meterRegistry.timer("auth.register", "outcome", "busy");
+         this.loginSuccess = meterRegistry.timer("auth.login", "outcome", "success");
+         this.loginFailure = meterRegistry.timer("auth.login", "outcome", "failure");
+         this.loginBusy = meterRegistry.timer("auth.login", "outcome", "busy");
+     }
+
+     @PostMapping("/register")
+     public Mono<ResponseEntity<String>> register(@RequestBody UserCredentials credentials) {
+         if (credentials == null || credentials.getUsername() == null || credentials.getPassword() == null ||
+             credentials.getUsername().trim().isEmpty() || credentials.getPassword().isEmpty()) {
+             return Mono.just(ResponseEntity.badRequest().body("Username and password cannot be empty."));
+         }
+         long start = System.nanoTime();
+         return loginService.registerUser(credentials.getUsername(), credentials.getPassword())
+                 .map(registered -> {
+                     if (registered) {
+                         registerCreated.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                         return ResponseEntity.status(HttpStatus.CREATED).body("User '" + credentials.getUsername() + "' registered successfully.");
+                     } else {
+                         registerConflict.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                         return ResponseEntity.status(HttpStatus.CONFLICT).body("Username '" + credentials.getUsername() + "' already exists.");
+                     }
+                 })
+                 .onErrorResume(RejectedExecutionException.class, e -> {
+                     registerBusy.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                     eventLog.log(AuthEventLog.Event.HASH_POOL_SATURATED, credentials.getUsername(), 0, "register");
+                     return Mono.just(serviceBusy());
+                 })
+                 .onErrorResume(e -> !(e instanceof RejectedExecutionException), e -> {
+                     registerError.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                     eventLog.log(AuthEventLog.Event.REGISTER_ERROR, credentials.getUsername(), 0, e.getClass().getSimpleName());
+                     return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Registration failed due to an internal error."));
+                 });
+     }
+
+     @PostMapping("/login")
+     public Mono<ResponseEntity<String>> login(@RequestBody UserCredentials credentials) {
+         if (credentials == null || credentials.getUsername() == null || credentials.getPassword() == null) {
+             return Mono.just(ResponseEntity.badRequest().body("Username and password required."));
+         }
+         long start = System.nanoTime();
+         return loginService.login(credentials.getUsername(), credentials.getPassword())
+                 .map(loggedIn -> {
+                     (loggedIn ? loginSuccess : loginFailure).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                     if (loggedIn) {
+                         return ResponseEntity.ok("Login successful for user '" + credentials.getUsername() + "'.");
+                     } else {
+                         return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Login failed: Invalid username or password.");
+                     }
+                 })
+                 .onErrorResume(RejectedExecutionException.class, e -> {
+                     loginBusy.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                     eventLog.log(AuthEventLog.Event.HASH_POOL_SATURATED, credentials.getUsername(), 0, "login");
+                     return Mono.just(serviceBusy());
+                 });
+     }
+
+     private static ResponseEntity<String> serviceBusy() {
+         return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                 .header("Retry-After", "1")
+                 .body("Server is busy, please retry shortly.");
+     }
+ }
+
+ @Service
+ class LoginServiceReactive {
+
+     private final CredentialStore userCredentials;
+     private final PasswordEncoder passwordEncoder;
+     private final Scheduler hashingScheduler;
+     private final AuthEventLog eventLog;
+     private final String dummyHash;
+     private final Timer encodeTimer;
+     private final Timer verifyTimer;
+
+     public LoginServiceReactive(CredentialStore userCredentials, PasswordEncoder passwordEncoder, Scheduler hashingScheduler,
+                                 AuthEventLog eventLog, MeterRegistry meterRegistry) {
+         this.userCredentials = userCredentials;
+         this.passwordEncoder = passwordEncoder;
+         this.hashingScheduler = hashingScheduler;
+         this.eventLog = eventLog;
+         this.dummyHash = passwordEncoder.encode(UUID.randomUUID().toString());
+         this.encodeTimer = meterRegistry.timer("auth.hash", "operation", "encode");
+         this.verifyTimer = meterRegistry.timer("auth.hash", "operation", "verify");
+     }
+
+     public Mono<Boolean> registerUser(String username, String password) {
+         return Mono.fromCallable(() -> register(username, password)).subscribeOn(hashingScheduler);
+     }
+
+     public Mono<Boolean> login(String username, String password) {
+         return Mono.fromCallable(() -> verify(username, password)).subscribeOn(hashingScheduler);
+     }
+
+     private String hashPassword(String password) {
+         long start = System.nanoTime();
+         String hash = passwordEncoder.encode(password);
+         encodeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+         return hash;
+     }
+
+     private boolean register(String username, String password) {
+         String trimmedUsername = (username != null) ? username.trim() : null;
+         if (trimmedUsername == null || trimmedUsername.isEmpty() || password == null || password.isEmpty()) {
+             eventLog.log(AuthEventLog.Event.REGISTER_REJECTED, trimmedUsername);
+             return false;
+         }
+         if (userCredentials.putIfAbsent(trimmedUsername, hashPassword(password)) == null) {
+             eventLog.log(AuthEventLog.Event.REGISTER_SUCCEEDED, trimmedUsername);
+             return true;
+         }
+         eventLog.log(AuthEventLog.Event.REGISTER_CONFLICT, trimmedUsername);
+         return false;
+     }
+
+     private boolean verify(String username, String password) {
+         String trimmedUsername = username.trim();
+         String storedHash = userCredentials.get(trimmedUsername);
+         long start = System.nanoTime();
+         if (storedHash == null) {
+             // Pay the BCrypt cost anyway so timing does not reveal which usernames exist.
+             passwordEncoder.matches(password, dummyHash);
+             eventLog.log(AuthEventLog.Event.LOGIN_UNKNOWN_USER, trimmedUsername);
+             return false;
+         }
+         boolean match = passwordEncoder.matches(password, storedHash);
+         verifyTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+         if (match) {
+             eventLog.log(AuthEventLog.Event.LOGIN_SUCCEEDED, trimmedUsername);
+             if (passwordEncoder.upgradeEncoding(storedHash)) {
+                 Mono.fromCallable(() -> userCredentials.replace(trimmedUsername, storedHash, hashPassword(password)))
+                         .subscribeOn(hashingScheduler)
+                         .subscribe(replaced -> {
+                             if (replaced) {
+                                 eventLog.log(AuthEventLog.Event.PASSWORD_REHASHED, trimmedUsername);
+                             }
+                         }, e -> {
+                             // The scheduler is saturated; the hash is upgraded on a later login instead.
+                         });
+             }
+         } else {
+             eventLog.log(AuthEventLog.Event.LOGIN_FAILED, trimmedUsername);
+         }
+         return match;
+     }
+ }